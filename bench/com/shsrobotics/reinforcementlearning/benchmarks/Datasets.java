@@ -0,0 +1,88 @@
+package com.shsrobotics.reinforcementlearning.benchmarks;
+
+import com.shsrobotics.reinforcementlearning.supervisedlearners.KNNLearner;
+import com.shsrobotics.reinforcementlearning.util.DataPoint;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Reproducible synthetic data for the benchmarks.
+ * <p/>
+ * @author Team 2412.
+ */
+final class Datasets {
+
+	/**
+	 * Seed shared by every benchmark, so runs compare the same data.
+	 */
+	static final long seed = 2412;
+
+	/**
+	 * Not instantiable.
+	 */
+	private Datasets() {
+	}
+
+	/**
+	 * An array filled with one value.
+	 * <p/>
+	 * @param length the array length.
+	 * @param value the value.
+	 * @return the array.
+	 */
+	static double[] filled(int length, double value) {
+		double[] array = new double[length];
+		Arrays.fill(array, value);
+		return array;
+	}
+
+	/**
+	 * Random points in the unit cube.
+	 * <p/>
+	 * @param count the number of points.
+	 * @param dimensions the number of variables per point.
+	 * @param random the random number generator.
+	 * @return the points.
+	 */
+	static double[][] points(int count, int dimensions, Random random) {
+		double[][] points = new double[count][dimensions];
+		for (double[] point : points) {
+			for (int j = 0; j < dimensions; j++) {
+				point[j] = random.nextDouble();
+			}
+		}
+		return points;
+	}
+
+	/**
+	 * A smooth function with several local optima over the unit cube.
+	 * <p/>
+	 * @param point the inputs.
+	 * @return the output.
+	 */
+	static double target(double[] point) {
+		double sum = 0.0;
+		for (int j = 0; j < point.length; j++) {
+			double centered = point[j] - 0.5;
+			sum += Math.cos(12 * centered) - 4 * centered * centered;
+		}
+		return sum;
+	}
+
+	/**
+	 * A KNN learner over the unit cube filled with random samples of
+	 * {@link #target(double[])}.
+	 * <p/>
+	 * @param size the number of data points.
+	 * @param dimensions the number of input variables.
+	 * @param random the random number generator.
+	 * @return the learner.
+	 */
+	static KNNLearner learner(int size, int dimensions, Random random) {
+		KNNLearner learner = new KNNLearner(filled(dimensions, 0.0), filled(dimensions, 1.0));
+		for (double[] point : points(size, dimensions, random)) {
+			learner.update(new DataPoint(point, target(point)));
+		}
+		return learner;
+	}
+}
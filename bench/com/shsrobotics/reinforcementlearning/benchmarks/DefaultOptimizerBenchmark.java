@@ -0,0 +1,98 @@
+package com.shsrobotics.reinforcementlearning.benchmarks;
+
+import com.shsrobotics.reinforcementlearning.optimizers.DefaultOptimizer;
+import com.shsrobotics.reinforcementlearning.supervisedlearners.KNNLearner;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@link DefaultOptimizer#maximize()} by dimensionality and
+ * iterations. The {@code "function"} objective is cheap, so it measures the
+ * optimizer itself; the {@code "knn"} objective is a learner query, as in an
+ * agent.
+ * <p/>
+ * @author Team 2412.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DefaultOptimizerBenchmark {
+
+	/**
+	 * Number of variables to optimize.
+	 */
+	@Param({"1", "2", "4"})
+	public int dimensions;
+
+	/**
+	 * Pattern search iterations.
+	 */
+	@Param({"10", "50", "200"})
+	public int iterations;
+
+	/**
+	 * The objective: {@code "function"} or {@code "knn"}.
+	 */
+	@Param({"function", "knn"})
+	public String objective;
+
+	/**
+	 * Number of data points behind the {@code "knn"} objective.
+	 */
+	@Param({"10000"})
+	public int size;
+
+	/**
+	 * The optimizer under test.
+	 */
+	private DefaultOptimizer optimizer;
+
+	/**
+	 * Build the optimizer.
+	 */
+	@Setup
+	public void setUp() {
+		double[] minimums = Datasets.filled(dimensions, 0.0);
+		double[] maximums = Datasets.filled(dimensions, 1.0);
+		if (objective.equals("knn")) {
+			final KNNLearner learner = Datasets.learner(size, dimensions, new Random(Datasets.seed));
+			optimizer = new DefaultOptimizer(iterations, minimums, maximums) {
+				@Override
+				public double f(double[] input) {
+					return learner.query(input);
+				}
+			};
+		} else {
+			optimizer = new DefaultOptimizer(iterations, minimums, maximums) {
+				@Override
+				public double f(double[] input) {
+					return Datasets.target(input);
+				}
+			};
+		}
+	}
+
+	/**
+	 * One optimization.
+	 * <p/>
+	 * @return the best coordinates.
+	 */
+	@Benchmark
+	public double[] maximize() {
+		return optimizer.maximize();
+	}
+}
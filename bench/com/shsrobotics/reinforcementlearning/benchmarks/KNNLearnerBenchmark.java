@@ -0,0 +1,116 @@
+package com.shsrobotics.reinforcementlearning.benchmarks;
+
+import com.shsrobotics.reinforcementlearning.supervisedlearners.KNNLearner;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Query cost of {@link KNNLearner} by dataset size, dimensionality and
+ * {@code k}.
+ * <p/>
+ * @author Team 2412.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KNNLearnerBenchmark {
+
+	/**
+	 * Number of stored data points.
+	 */
+	@Param({"1000", "10000", "100000"})
+	public int size;
+
+	/**
+	 * Number of input variables.
+	 */
+	@Param({"2", "6"})
+	public int dimensions;
+
+	/**
+	 * Number of neighbors.
+	 */
+	@Param({"3", "10"})
+	public int k;
+
+	/**
+	 * Whether queries use the KD-tree index.
+	 */
+	@Param({"false", "true"})
+	public boolean indexed;
+
+	/**
+	 * Number of points in a batch query. A power of two.
+	 */
+	private static final int batch = 256;
+
+	/**
+	 * The learner under test.
+	 */
+	private KNNLearner learner;
+
+	/**
+	 * Query points, cycled through by {@link #query()}.
+	 */
+	private double[][] queries;
+
+	/**
+	 * Batch query results.
+	 */
+	private double[] out;
+
+	/**
+	 * Next query point.
+	 */
+	private int next = 0;
+
+	/**
+	 * Fill the learner.
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(Datasets.seed);
+		learner = Datasets.learner(size, dimensions, random);
+		learner.setK(k);
+		learner.setIndexed(indexed);
+		queries = Datasets.points(batch, dimensions, random);
+		out = new double[batch];
+	}
+
+	/**
+	 * One prediction.
+	 * <p/>
+	 * @return the prediction.
+	 */
+	@Benchmark
+	public double query() {
+		double[] input = queries[next];
+		next = (next + 1) & (batch - 1);
+		return learner.query(input);
+	}
+
+	/**
+	 * A batch of predictions.
+	 * <p/>
+	 * @return the predictions.
+	 */
+	@Benchmark
+	public double[] batchQuery() {
+		learner.query(queries, out);
+		return out;
+	}
+}
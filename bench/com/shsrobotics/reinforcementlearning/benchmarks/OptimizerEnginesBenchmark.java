@@ -0,0 +1,164 @@
+package com.shsrobotics.reinforcementlearning.benchmarks;
+
+import com.shsrobotics.reinforcementlearning.optimizers.BoundedOptimizer;
+import com.shsrobotics.reinforcementlearning.optimizers.DefaultOptimizer;
+import com.shsrobotics.reinforcementlearning.optimizers.NelderMeadOptimizer;
+import com.shsrobotics.reinforcementlearning.optimizers.Optimizer;
+import com.shsrobotics.reinforcementlearning.optimizers.QuasiNewtonOptimizer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Evaluations each optimizer engine needs to converge, and the optimum it
+ * reaches, on {@link Datasets#target(double[])}. The {@link Counts} columns
+ * are totals per iteration: divide {@code evaluations} and {@code value} by
+ * {@code searches} for the per-search figures. The target has several local
+ * optima, so engines are compared on value as well as cost.
+ * <p/>
+ * @author Team 2412.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OptimizerEnginesBenchmark {
+
+	/**
+	 * Number of variables to optimize.
+	 */
+	@Param({"2", "4", "8"})
+	public int dimensions;
+
+	/**
+	 * The engine: {@code "pattern"}, {@code "neldermead"} or
+	 * {@code "quasinewton"}.
+	 */
+	@Param({"pattern", "neldermead", "quasinewton"})
+	public String engine;
+
+	/**
+	 * Convergence tolerance, as a fraction of each variable's range.
+	 */
+	@Param({"1e-6"})
+	public double tolerance;
+
+	/**
+	 * The optimizer under test.
+	 */
+	private Optimizer optimizer;
+
+	/**
+	 * Objective evaluations so far.
+	 */
+	private long calls = 0;
+
+	/**
+	 * Build the optimizer.
+	 */
+	@Setup
+	public void setUp() {
+		double[] minimums = Datasets.filled(dimensions, 0.0);
+		double[] maximums = Datasets.filled(dimensions, 1.0);
+		int limit = 10000; // iterations for pattern search, evaluations for the others; the tolerance ends searches first
+		if (engine.equals("pattern")) {
+			DefaultOptimizer pattern = new DefaultOptimizer(limit, minimums, maximums) {
+				@Override
+				public double f(double[] input) {
+					return objective(input);
+				}
+			};
+			pattern.setTolerance(tolerance);
+			optimizer = pattern;
+		} else {
+			BoundedOptimizer bounded;
+			if (engine.equals("neldermead")) {
+				bounded = new NelderMeadOptimizer(limit, minimums, maximums) {
+					@Override
+					public double f(double[] input) {
+						return objective(input);
+					}
+				};
+			} else {
+				bounded = new QuasiNewtonOptimizer(limit, minimums, maximums) {
+					@Override
+					public double f(double[] input) {
+						return objective(input);
+					}
+				};
+			}
+			bounded.setTolerance(tolerance);
+			optimizer = bounded;
+		}
+	}
+
+	/**
+	 * One optimization to convergence.
+	 * <p/>
+	 * @param counts records evaluations and the value reached.
+	 * @return the best coordinates.
+	 */
+	@Benchmark
+	public double[] maximize(Counts counts) {
+		long before = calls;
+		double[] best = optimizer.maximize();
+		counts.searches++;
+		counts.evaluations += calls - before;
+		counts.value += Datasets.target(best);
+		return best;
+	}
+
+	/**
+	 * The objective, counted.
+	 * <p/>
+	 * @param input the inputs.
+	 * @return the output.
+	 */
+	private double objective(double[] input) {
+		calls++;
+		return Datasets.target(input);
+	}
+
+	/**
+	 * Evaluation counts, reported beside the timings.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Counts {
+		/**
+		 * Searches run.
+		 */
+		public long searches;
+		/**
+		 * Objective evaluations over every search.
+		 */
+		public long evaluations;
+		/**
+		 * Sum of the objective at each search's result.
+		 */
+		public double value;
+
+		/**
+		 * Start each iteration from zero.
+		 */
+		@Setup(Level.Iteration)
+		public void reset() {
+			searches = 0;
+			evaluations = 0;
+			value = 0.0;
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package com.shsrobotics.reinforcementlearning.benchmarks;
+
+import com.shsrobotics.reinforcementlearning.optimizers.DefaultOptimizer;
+import com.shsrobotics.reinforcementlearning.rl.RLAgent;
+import com.shsrobotics.reinforcementlearning.supervisedlearners.KNNLearner;
+import com.shsrobotics.reinforcementlearning.util.DataPoint;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Cost of {@link RLAgent#requestAction(RLAgent.State)} for an agent that
+ * maximizes a KNN estimate of reward over the actions.
+ * <p/>
+ * @author Team 2412.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RLAgentBenchmark {
+
+	/**
+	 * Number of stored experiences.
+	 */
+	@Param({"1000", "10000"})
+	public int size;
+
+	/**
+	 * Number of state parameters.
+	 */
+	@Param({"2", "4"})
+	public int states;
+
+	/**
+	 * Number of action parameters.
+	 */
+	@Param({"1", "2"})
+	public int actions;
+
+	/**
+	 * Pattern search iterations per action.
+	 */
+	@Param({"10", "50"})
+	public int iterations;
+
+	/**
+	 * Number of query states. A power of two.
+	 */
+	private static final int stateCount = 256;
+
+	/**
+	 * The agent under test.
+	 */
+	private BenchmarkAgent agent;
+
+	/**
+	 * Query states, cycled through by {@link #requestAction()}.
+	 */
+	private RLAgent.State[] queries;
+
+	/**
+	 * Next query state.
+	 */
+	private int next = 0;
+
+	/**
+	 * Build and train the agent.
+	 */
+	@Setup
+	public void setUp() {
+		Random random = new Random(Datasets.seed);
+		agent = new BenchmarkAgent(states, actions, iterations);
+		for (int i = 0; i < size; i++) {
+			double[] state = Datasets.points(1, states, random)[0];
+			double[] action = Datasets.points(1, actions, random)[0];
+			agent.learn(state, action, Datasets.target(state) + Datasets.target(action));
+		}
+		agent.setMode(RLAgent.Mode.kAct);
+
+		queries = new RLAgent.State[stateCount];
+		for (int i = 0; i < stateCount; i++) {
+			queries[i] = agent.state(Datasets.points(1, states, random)[0]);
+		}
+	}
+
+	/**
+	 * One action request.
+	 * <p/>
+	 * @return the action.
+	 */
+	@Benchmark
+	public RLAgent.Action requestAction() {
+		RLAgent.State state = queries[next];
+		next = (next + 1) & (stateCount - 1);
+		return agent.requestAction(state);
+	}
+
+	/**
+	 * An agent that predicts reward from state and action with a KNN learner
+	 * and picks the action with the highest prediction.
+	 */
+	private static class BenchmarkAgent extends RLAgent {
+		/**
+		 * Predicts reward from state and action.
+		 */
+		private final KNNLearner learner;
+
+		/**
+		 * Chooses the action with the highest predicted reward.
+		 */
+		private final DefaultOptimizer optimizer;
+
+		/**
+		 * The state being acted on.
+		 */
+		private double[] currentState;
+
+		/**
+		 * Create an agent over the unit cube.
+		 * <p/>
+		 * @param states the number of state parameters.
+		 * @param actions the number of action parameters.
+		 * @param iterations pattern search iterations per action.
+		 */
+		BenchmarkAgent(final int states, final int actions, int iterations) {
+			super(names("Action", actions), names("State", states), ranges(states, actions), new HashMap<String, Number>());
+			learner = new KNNLearner(Datasets.filled(states + actions, 0.0), Datasets.filled(states + actions, 1.0));
+			optimizer = new DefaultOptimizer(iterations, Datasets.filled(actions, 0.0), Datasets.filled(actions, 1.0)) {
+				@Override
+				public double f(double[] action) {
+					return learner.query(join(currentState, action));
+				}
+
+				@Override
+				public void f(double[][] actions, double[] out) {
+					double[][] inputs = new double[actions.length][];
+					for (int i = 0; i < actions.length; i++) {
+						inputs[i] = join(currentState, actions[i]);
+					}
+					learner.query(inputs, out); // one scan for every vertex
+				}
+			};
+		}
+
+		/**
+		 * Wrap state values.
+		 * <p/>
+		 * @param values the state values.
+		 * @return the state.
+		 */
+		State state(double[] values) {
+			return new State(stateNames, values);
+		}
+
+		/**
+		 * Record an experience.
+		 * <p/>
+		 * @param state the state values.
+		 * @param action the action values.
+		 * @param reward the reward received.
+		 */
+		void learn(double[] state, double[] action, double reward) {
+			updateSupervisedLearner(state(state), new Action(actionNames, action), null, reward);
+		}
+
+		@Override
+		protected double[] query(State state) {
+			currentState = state.get();
+			return optimizer.maximize();
+		}
+
+		@Override
+		protected boolean updateSupervisedLearner(State state, Action action, State newState, double reward) {
+			learner.update(new DataPoint(join(state.get(), action.get()), reward));
+			return true;
+		}
+
+		/**
+		 * Concatenate two arrays.
+		 * <p/>
+		 * @param a the first array.
+		 * @param b the second array.
+		 * @return the joined array.
+		 */
+		private static double[] join(double[] a, double[] b) {
+			double[] joined = new double[a.length + b.length];
+			System.arraycopy(a, 0, joined, 0, a.length);
+			System.arraycopy(b, 0, joined, a.length, b.length);
+			return joined;
+		}
+
+		/**
+		 * Generate parameter names.
+		 * <p/>
+		 * @param prefix the name prefix.
+		 * @param count the number of names.
+		 * @return the names.
+		 */
+		private static String[] names(String prefix, int count) {
+			String[] names = new String[count];
+			for (int i = 0; i < count; i++) {
+				names[i] = prefix + " " + i;
+			}
+			return names;
+		}
+
+		/**
+		 * Unit ranges for every parameter.
+		 * <p/>
+		 * @param states the number of state parameters.
+		 * @param actions the number of action parameters.
+		 * @return the ranges map.
+		 */
+		private static Map<String, double[]> ranges(int states, int actions) {
+			Map<String, double[]> ranges = new HashMap<>();
+			ranges.put("Minimum Action Values", Datasets.filled(actions, 0.0));
+			ranges.put("Maximum Action Values", Datasets.filled(actions, 1.0));
+			ranges.put("Minimum State Values", Datasets.filled(states, 0.0));
+			ranges.put("Maximum State Values", Datasets.filled(states, 1.0));
+			return ranges;
+		}
+	}
+}
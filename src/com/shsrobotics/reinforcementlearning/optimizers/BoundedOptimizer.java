@@ -0,0 +1,255 @@
+package com.shsrobotics.reinforcementlearning.optimizers;
+
+import com.shsrobotics.reinforcementlearning.util.Metrics;
+import java.util.Random;
+
+/**
+ * Base class for local optimizers over a box. Subclasses implement
+ * {@link #search(double[], double)} as a minimization through
+ * {@link #evaluate(double[])}, which keeps points inside the bounds, counts
+ * evaluations, and remembers the best point seen. Maximizing negates the
+ * function, so subclasses only ever minimize.
+ * <p/>
+ * A search ends when it converges to within the tolerance, or when the
+ * evaluation budget runs out; either way the best point seen is returned. Not
+ * thread safe; use one optimizer per thread.
+ * <p/>
+ * @author Team 2412.
+ */
+public abstract class BoundedOptimizer implements Optimizer {
+
+	/**
+	 * Latency of each call to {@code maximize()} or {@code minimize()}.
+	 */
+	private static final Metrics.Histogram searchLatency = Metrics.getDefault().histogram("Optimizer Search");
+	/**
+	 * Calls to {@link #f(double[])}.
+	 */
+	private static final Metrics.Counter evaluationCount = Metrics.getDefault().counter("Optimizer Evaluations");
+
+	/**
+	 * The number of variables to optimize.
+	 */
+	protected final int n;
+	/**
+	 * Minimum variable values.
+	 */
+	protected final double[] minimums;
+	/**
+	 * Maximum variable values.
+	 */
+	protected final double[] maximums;
+	/**
+	 * Most calls to {@link #f(double[])} per search.
+	 */
+	private final int maximumEvaluations;
+	/**
+	 * A search converges once its steps are smaller than this fraction of
+	 * each variable's range.
+	 */
+	private double tolerance = 1e-6;
+	/**
+	 * Chooses starting points.
+	 */
+	private final Random random = new Random();
+	/**
+	 * 1 to minimize the function, -1 to maximize it.
+	 */
+	private double sign = 1.0;
+	/**
+	 * Calls to {@link #f(double[])} in the current search.
+	 */
+	private int evaluations = 0;
+	/**
+	 * Calls to {@link #f(double[])} in the last finished search.
+	 */
+	private volatile int evaluationsUsed = 0;
+	/**
+	 * Best point of the current search.
+	 */
+	private double[] best;
+	/**
+	 * Value to minimize at {@link #best}.
+	 */
+	private double bestValue;
+
+	/**
+	 * Create an optimizer.
+	 * <p/>
+	 * @param maximumEvaluations the most calls to {@link #f(double[])} per
+	 * search.
+	 * @param minimums the minimum domain values.
+	 * @param maximums the maximum domain values.
+	 */
+	public BoundedOptimizer(int maximumEvaluations, double[] minimums, double[] maximums) {
+		this.n = minimums.length;
+		this.maximumEvaluations = maximumEvaluations;
+		this.minimums = minimums;
+		this.maximums = maximums;
+	}
+
+	/**
+	 * Set when a search counts as converged.
+	 * <p/>
+	 * @param tolerance the smallest step worth taking, as a fraction of each
+	 * variable's range. Defaults to {@code 1e-6}.
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Number of calls to {@link #f(double[])} the last search made.
+	 * <p/>
+	 * @return the evaluation count.
+	 */
+	public int getEvaluations() {
+		return evaluationsUsed;
+	}
+
+	@Override
+	public final double[] maximize() {
+		return optimize(-1.0, null, 1.0);
+	}
+
+	@Override
+	public final double[] minimize() {
+		return optimize(1.0, null, 1.0);
+	}
+
+	/**
+	 * Maximize from a known starting point with smaller first steps, such as
+	 * the last answer when the function has changed little since.
+	 * <p/>
+	 * @param center the starting point. Values outside the bounds are
+	 * clamped to them.
+	 * @param stepScale the first steps, as a fraction of the usual ones.
+	 * @return the best point seen.
+	 */
+	public final double[] maximize(double[] center, double stepScale) {
+		return optimize(-1.0, center, stepScale);
+	}
+
+	/**
+	 * Minimize from a known starting point with smaller first steps. See
+	 * {@link #maximize(double[], double)}.
+	 * <p/>
+	 * @param center the starting point. Values outside the bounds are
+	 * clamped to them.
+	 * @param stepScale the first steps, as a fraction of the usual ones.
+	 * @return the best point seen.
+	 */
+	public final double[] minimize(double[] center, double stepScale) {
+		return optimize(1.0, center, stepScale);
+	}
+
+	/**
+	 * Run one search.
+	 * <p/>
+	 * @param sign 1 to minimize, -1 to maximize.
+	 * @param seed the starting point, or {@code null} for a random point in
+	 * the middle half of the bounds.
+	 * @param stepScale the first steps, as a fraction of the usual ones.
+	 * @return the best point seen.
+	 */
+	private double[] optimize(double sign, double[] seed, double stepScale) {
+		long start = searchLatency.start();
+		this.sign = sign;
+		this.evaluations = 0;
+		this.best = null;
+		this.bestValue = Double.POSITIVE_INFINITY;
+
+		double[] center;
+		if (seed == null) {
+			center = new double[n];
+			for (int k = 0; k < n; k++) {
+				center[k] = minimums[k] + (0.25 + 0.5 * random.nextDouble()) * range(k);
+			}
+		} else {
+			center = seed.clone();
+			project(center);
+		}
+		search(center, stepScale);
+
+		evaluationsUsed = evaluations;
+		searchLatency.stop(start);
+		return (best == null) ? center : best;
+	}
+
+	/**
+	 * Minimize {@link #evaluate(double[])} from a starting point. Should
+	 * return once converged or {@link #exhausted()}.
+	 * <p/>
+	 * @param start the starting point, inside the bounds.
+	 * @param stepScale how much to scale the engine's usual first steps by.
+	 */
+	protected abstract void search(double[] start, double stepScale);
+
+	/**
+	 * Evaluate the function as a value to minimize. The point is first moved
+	 * inside the bounds, in place.
+	 * <p/>
+	 * @param point the coordinates. Projected onto the bounds.
+	 * @return the function value, negated when maximizing.
+	 */
+	protected final double evaluate(double[] point) {
+		project(point);
+		evaluations++;
+		evaluationCount.add(1);
+		double value = sign * f(point);
+		if (value < bestValue || best == null) {
+			bestValue = value;
+			best = point.clone();
+		}
+		return value;
+	}
+
+	/**
+	 * Whether the evaluation budget has run out.
+	 * <p/>
+	 * @return true if the search should stop.
+	 */
+	protected final boolean exhausted() {
+		return evaluations >= maximumEvaluations;
+	}
+
+	/**
+	 * Move a point to the nearest point inside the bounds.
+	 * <p/>
+	 * @param point the coordinates. Changed in place.
+	 */
+	protected final void project(double[] point) {
+		for (int k = 0; k < n; k++) {
+			point[k] = Math.max(minimums[k], Math.min(maximums[k], point[k]));
+		}
+	}
+
+	/**
+	 * The range of a variable.
+	 * <p/>
+	 * @param k the variable.
+	 * @return the maximum minus the minimum.
+	 */
+	protected final double range(int k) {
+		return maximums[k] - minimums[k];
+	}
+
+	/**
+	 * Whether a step is too small to matter in every variable.
+	 * <p/>
+	 * @param from the point stepped from.
+	 * @param to the point stepped to.
+	 * @return true if converged.
+	 */
+	protected final boolean converged(double[] from, double[] to) {
+		for (int k = 0; k < n; k++) {
+			if (Math.abs(to[k] - from[k]) >= tolerance * range(k)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public abstract double f(double[] input);
+}
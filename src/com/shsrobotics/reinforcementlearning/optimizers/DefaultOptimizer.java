@@ -1,6 +1,16 @@
 package com.shsrobotics.reinforcementlearning.optimizers;
 
 import com.shsrobotics.reinforcementlearning.util.DataPoint;
+import com.shsrobotics.reinforcementlearning.util.Metrics;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Optimize coordinates based on a Pattern Search algorithm. To use this class,
@@ -13,6 +23,19 @@ import com.shsrobotics.reinforcementlearning.util.DataPoint;
  */
 public abstract class DefaultOptimizer implements Optimizer {
 
+	/**
+	 * Latency of each call to {@code maximize()} or {@code minimize()}.
+	 */
+	private static final Metrics.Histogram searchLatency = Metrics.getDefault().histogram("Optimizer Search");
+	/**
+	 * Pattern search iterations run.
+	 */
+	private static final Metrics.Counter iterationCount = Metrics.getDefault().counter("Optimizer Iterations");
+	/**
+	 * Calls to {@link #f(double[])}.
+	 */
+	private static final Metrics.Counter evaluationCount = Metrics.getDefault().counter("Optimizer Evaluations");
+
 	/**
 	 * The number of variables to optimize. Data dimensions.
 	 */
@@ -29,11 +52,6 @@ public abstract class DefaultOptimizer implements Optimizer {
 	 * Maximum Variable values. Used to choose random starting points.
 	 */
 	private final double[] maximums;
-	/**
-	 * Step size for Pattern Search algorithm. Defaults to ten percent of
-	 * average variable range.
-	 */
-	private double[] PatternSearchStep;
 	/**
 	 * Stores the default search step size. Defaults to a quarter of average
 	 * variable range, for a total range of a quarter of the search size.
@@ -43,6 +61,46 @@ public abstract class DefaultOptimizer implements Optimizer {
 	 * Default step size fraction.
 	 */
 	private double stepSize = 0.25;
+	/**
+	 * Random number generator for each search start.
+	 */
+	private Random[] randoms = {new Random()};
+	/**
+	 * Memo of function values for each search start, or {@code null} entries
+	 * if caching is off.
+	 */
+	private EvaluationCache[] caches;
+	/**
+	 * Maximum number of function values each search remembers.
+	 */
+	private int cacheSize = 1024;
+	/**
+	 * Runs the extra search starts, or {@code null} to run them one after
+	 * another on the calling thread.
+	 */
+	private ExecutorService executor = null;
+	/**
+	 * Longest a search may run, in nanoseconds, or 0 for no limit.
+	 */
+	private long timeBudget = 0;
+	/**
+	 * Most calls to {@link #f(double[])} each search start may make, or 0 for
+	 * no limit.
+	 */
+	private long evaluationBudget = 0;
+	/**
+	 * A search stops once every step is smaller than this fraction of its
+	 * variable's range.
+	 */
+	private double tolerance = 0.0;
+	/**
+	 * Iterations completed by the search start that produced the last result.
+	 */
+	private volatile int iterationsCompleted = 0;
+	/**
+	 * Function value at the last result.
+	 */
+	private volatile double bestValue = Double.NaN;
 
 	/**
 	 * Create an optimizer.
@@ -57,25 +115,260 @@ public abstract class DefaultOptimizer implements Optimizer {
 		this.minimums = minimums;
 		this.maximums = maximums;
 
-		PatternSearchStep = new double[n];
 		InitialStep = new double[n];
 
 		//find step size
 		for (int variable = 0; variable < n; variable++) {
 			InitialStep[variable] = stepSize * (maximums[variable] - minimums[variable]); // twenty-five percent of the range
 		}
+		caches = newCaches(randoms.length);
 	}
 
 	@Override
 	public final double[] maximize() {
-		PatternSearchStep = InitialStep.clone();
-		return psOptimize(true);
+		long start = searchLatency.start();
+		double[] result = optimize(true, null, 1.0);
+		searchLatency.stop(start);
+		return result;
 	}
 
 	@Override
 	public final double[] minimize() {
-		PatternSearchStep = InitialStep.clone();
-		return psOptimize(false);
+		long start = searchLatency.start();
+		double[] result = optimize(false, null, 1.0);
+		searchLatency.stop(start);
+		return result;
+	}
+
+	/**
+	 * Maximize from a known starting point with a smaller pattern, such as
+	 * the last answer when the function has changed little since. With
+	 * several starts, only the first is seeded; the rest start at random to
+	 * guard against the answer having moved far.
+	 * <p/>
+	 * @param center the starting center. Values outside the bounds are
+	 * clamped to them.
+	 * @param stepScale the starting step, as a fraction of the usual one.
+	 * @return the maximized coordinates.
+	 */
+	public final double[] maximize(double[] center, double stepScale) {
+		long start = searchLatency.start();
+		double[] result = optimize(true, center, stepScale);
+		searchLatency.stop(start);
+		return result;
+	}
+
+	/**
+	 * Minimize from a known starting point with a smaller pattern. See
+	 * {@link #maximize(double[], double)}.
+	 * <p/>
+	 * @param center the starting center. Values outside the bounds are
+	 * clamped to them.
+	 * @param stepScale the starting step, as a fraction of the usual one.
+	 * @return the minimized coordinates.
+	 */
+	public final double[] minimize(double[] center, double stepScale) {
+		long start = searchLatency.start();
+		double[] result = optimize(false, center, stepScale);
+		searchLatency.stop(start);
+		return result;
+	}
+
+	/**
+	 * Run several independent pattern searches from different random centers
+	 * and keep the best result. One search runs on the calling thread and the
+	 * others are submitted to {@code executor}, so with enough threads a call
+	 * takes no longer than a single search. When {@code executor} is used,
+	 * {@link #f(double[])} must be safe to call from several threads at once.
+	 * <p/>
+	 * @param starts how many searches to run. Defaults to 1.
+	 * @param executor runs the extra searches, or {@code null} to run them one
+	 * after another on the calling thread.
+	 */
+	public void setMultiStart(int starts, ExecutorService executor) {
+		if (starts < 1) {
+			throw new Error("At least one start is required.");
+		}
+		Random[] newRandoms = new Random[starts];
+		for (int start = 0; start < starts; start++) {
+			newRandoms[start] = (start < randoms.length) ? randoms[start] : new Random();
+		}
+		this.randoms = newRandoms;
+		this.caches = newCaches(starts);
+		this.executor = executor;
+	}
+
+	/**
+	 * Set how many function values each search remembers. Pattern search
+	 * revisits the same coordinates as it moves and shrinks, and remembered
+	 * values are reused instead of calling {@link #f(double[])} again. The
+	 * memo only lasts for one call to {@code maximize()} or
+	 * {@code minimize()}, so {@code f} may change between calls.
+	 * <p/>
+	 * @param entries the number of values. Defaults to 1024. Set to 0 to
+	 * turn caching off.
+	 */
+	public void setCacheSize(int entries) {
+		this.cacheSize = entries;
+		this.caches = newCaches(randoms.length);
+	}
+
+	/**
+	 * Number of function evaluations saved by the cache since it was last
+	 * resized.
+	 * <p/>
+	 * @return the hit count.
+	 */
+	public long getCacheHits() {
+		long hits = 0;
+		for (EvaluationCache cache : caches) {
+			hits += (cache == null) ? 0 : cache.hits();
+		}
+		return hits;
+	}
+
+	/**
+	 * Number of function evaluations the cache could not answer since it was
+	 * last resized.
+	 * <p/>
+	 * @return the miss count.
+	 */
+	public long getCacheMisses() {
+		long misses = 0;
+		for (EvaluationCache cache : caches) {
+			misses += (cache == null) ? 0 : cache.misses();
+		}
+		return misses;
+	}
+
+	/**
+	 * Bound how long a search may run. When the budget runs out, the best
+	 * point found so far is returned. Each start is checked once per iteration,
+	 * so a search overruns by at most one iteration.
+	 * <p/>
+	 * @param time the longest a call to {@code maximize()} or
+	 * {@code minimize()} may take, or 0 for no limit.
+	 * @param unit the unit of {@code time}.
+	 */
+	public void setTimeBudget(long time, TimeUnit unit) {
+		this.timeBudget = unit.toNanos(time);
+	}
+
+	/**
+	 * Bound how many times each search start may call {@link #f(double[])}.
+	 * Values answered by the cache do not count. When the budget runs out, the
+	 * best point found so far is returned. The budget is checked once per
+	 * iteration, so a search may overrun it by one iteration's evaluations.
+	 * <p/>
+	 * @param evaluations the most calls, or 0 for no limit.
+	 */
+	public void setEvaluationBudget(long evaluations) {
+		this.evaluationBudget = evaluations;
+	}
+
+	/**
+	 * Stop searching once the pattern has shrunk below a tolerance.
+	 * <p/>
+	 * @param tolerance the smallest step worth taking, as a fraction of each
+	 * variable's range, or 0 to always run every iteration.
+	 */
+	public void setTolerance(double tolerance) {
+		this.tolerance = tolerance;
+	}
+
+	/**
+	 * Number of iterations the last search completed, which may be fewer than
+	 * requested if a budget ran out or the pattern shrank below the
+	 * tolerance. With several starts, this is for the start whose result was
+	 * returned.
+	 * <p/>
+	 * @return the iteration count.
+	 */
+	public int getIterationsCompleted() {
+		return iterationsCompleted;
+	}
+
+	/**
+	 * Function value at the point the last search returned, as the search
+	 * evaluated it, so callers need not evaluate it again.
+	 * <p/>
+	 * @return the value, or {@code NaN} before the first search.
+	 */
+	public double getBestValue() {
+		return bestValue;
+	}
+
+	/**
+	 * Create a cache for each search start.
+	 * <p/>
+	 * @param starts the number of search starts.
+	 * @return the caches, or {@code null} entries if caching is off.
+	 */
+	private EvaluationCache[] newCaches(int starts) {
+		EvaluationCache[] newCaches = new EvaluationCache[starts];
+		for (int start = 0; start < starts && cacheSize > 0; start++) {
+			newCaches[start] = new EvaluationCache(cacheSize, minimums, maximums);
+		}
+		return newCaches;
+	}
+
+	/**
+	 * Run every search start and keep the best result.
+	 * <p/>
+	 * @param maximize whether or not to maximize or minimize. If set to true,
+	 * the method will maximize.
+	 * @param center the first start's center, or {@code null} to choose it
+	 * at random.
+	 * @param stepScale the first start's step, as a fraction of the usual one.
+	 * @return the optimized coordinates.
+	 */
+	private double[] optimize(final boolean maximize, double[] center, double stepScale) {
+		Random[] starts = randoms;
+		final EvaluationCache[] memos = caches;
+		final long deadline = (timeBudget > 0) ? System.nanoTime() + timeBudget : 0;
+		if (starts.length == 1) {
+			Result result = psOptimize(maximize, starts[0], memos[0], deadline, center, stepScale);
+			iterationsCompleted = result.iterations;
+			bestValue = result.center.value();
+			return result.center.coordinates();
+		}
+
+		List<Future<Result>> results = new ArrayList<>();
+		if (executor != null) {
+			for (int start = 1; start < starts.length; start++) {
+				final Random random = starts[start];
+				final EvaluationCache cache = memos[start];
+				results.add(executor.submit(new Callable<Result>() {
+					@Override
+					public Result call() {
+						return psOptimize(maximize, random, cache, deadline, null, 1.0);
+					}
+				}));
+			}
+		}
+
+		Result best = psOptimize(maximize, starts[0], memos[0], deadline, center, stepScale);
+		for (int start = 1; start < starts.length; start++) {
+			Result result;
+			if (executor == null) {
+				result = psOptimize(maximize, starts[start], memos[start], deadline, null, 1.0);
+			} else {
+				try {
+					result = results.get(start - 1).get();
+				} catch (ExecutionException e) {
+					throw new Error("Search failed.", e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new Error("Interrupted.", e);
+				}
+			}
+			if (better(result.center.value(), best.center.value(), maximize)) {
+				best = result;
+			}
+		}
+		iterationsCompleted = best.iterations;
+		bestValue = best.center.value();
+		return best.center.coordinates();
 	}
 
 	/**
@@ -84,37 +377,75 @@ public abstract class DefaultOptimizer implements Optimizer {
 	 * <p/>
 	 * @param maximize whether or not to maximize or minimize. If set to true,
 	 * the method will maximize.
-	 * @return the maximized coordinates.
+	 * @param random chooses the starting center.
+	 * @param cache remembers function values, or {@code null}.
+	 * @param deadline when to stop, from {@link System#nanoTime()}, or 0 for
+	 * no deadline.
+	 * @param seed the starting center, or {@code null} to choose it at random.
+	 * @param stepScale the starting step, as a fraction of {@link #InitialStep}.
+	 * @return the center of the final pattern, the best point found.
 	 */
-	private double[] psOptimize(boolean maximize) {
+	private Result psOptimize(boolean maximize, Random random, EvaluationCache cache, long deadline, double[] seed, double stepScale) {
+		long missesBefore = 0;
+		if (cache != null) {
+			cache.clear();
+			missesBefore = cache.misses();
+		}
+		long requested = 2 * n + 1; // values requested; with no cache, each is a call to f
+		
+		/*
+		 * Step size for Pattern Search algorithm. Starts at a quarter of the
+		 * variable range.
+		 */
+		double[] PatternSearchStep = InitialStep.clone();
+		for (int k = 0; k < n; k++) {
+			PatternSearchStep[k] *= stepScale;
+		}
+		
 		/*
 		 * Pattern vertices.  Center is stored in 0, Left(k) is stored in k + 1,
 		 * and Right(k) is stored in (k + 1) + n.
 		 */
 		Point[] vertices = new Point[2 * n + 1];
 		int length = vertices.length;
+		int[] pending = new int[length]; // vertices to evaluate together
+		int count = 0;
+		double[][][] missPoints = new double[length + 1][][]; // by miss count, made when first needed
+		double[][] missValues = new double[length + 1][];
+		double[] previousCenter = new double[n]; // center before each move
 
 		// center point placed randomly
-		double[] center = rands();
-		for (int vertex = 0; vertex < length; vertex++) {
-			if (vertex == 0) {
-				vertices[vertex] = new Point(center, f(center));
-			} else {
-				vertices[vertex] = new Point(center, 0.0); // saves computation time, as these are recalculated immediately
+		double[] center;
+		if (seed == null) {
+			center = rands(random);
+		} else {
+			center = new double[n];
+			for (int k = 0; k < n; k++) {
+				center[k] = Math.max(minimums[k], Math.min(maximums[k], seed[k]));
 			}
 		}
+		for (int vertex = 0; vertex < length; vertex++) {
+			vertices[vertex] = new Point(center, 0.0, cache);
+			pending[count++] = vertex;
+		}
 
 		// each variable
 		for (int k = 0; k < n; k++) {
 			int leftPoint = k + 1;
 			int rightPoint = k + 1 + n;
 			vertices[leftPoint].increment(k, -PatternSearchStep[k]);
-			vertices[leftPoint].update();
 			vertices[rightPoint].increment(k, PatternSearchStep[k]);
-			vertices[rightPoint].update();
 		}
+		evaluate(vertices, pending, count, cache, missPoints, missValues);
 
-		for (int i = 0; i < iterations; i++) {
+		int i = 0;
+		for (; i < iterations; i++) {
+			if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+				break; // out of time
+			}
+			if (evaluationBudget > 0 && ((cache == null) ? requested : cache.misses() - missesBefore) >= evaluationBudget) {
+				break; // out of evaluations
+			}
 			double best = vertices[0].value(); // best value
 			int bestIndex = 0; // index of best value (currently center)
 			for (int vertex = 1; vertex < length; vertex++) {
@@ -125,15 +456,26 @@ public abstract class DefaultOptimizer implements Optimizer {
 			}
 			if (bestIndex == 0) {
 				// scale pattern
+				boolean converged = tolerance > 0;
 				for (int k = 0; k < n; k++) {
 					PatternSearchStep[k] /= 2; // halve search size.
+					converged &= PatternSearchStep[k] < tolerance * (maximums[k] - minimums[k]);
+				}
+				if (converged) {
+					i++;
+					break; // steps too small to matter
+				}
+				count = 0;
+				for (int k = 0; k < n; k++) {
 					int leftPoint = k + 1;
 					int rightPoint = k + 1 + n;
 					vertices[leftPoint].increment(k, PatternSearchStep[k]); // opposite direction
-					vertices[leftPoint].update();
 					vertices[rightPoint].increment(k, -PatternSearchStep[k]); // opposite direction
-					vertices[rightPoint].update();
+					pending[count++] = leftPoint;
+					pending[count++] = rightPoint;
 				}
+				evaluate(vertices, pending, count, cache, missPoints, missValues);
+				requested += 2 * n;
 			} else {
 				// move pattern
 				int variable = (bestIndex - 1) % n; // the variable to change
@@ -147,22 +489,57 @@ public abstract class DefaultOptimizer implements Optimizer {
 				}
 				
 				double change = direction * PatternSearchStep[variable]; // difference between best and center
+				double[] oldCenter = previousCenter;
+				System.arraycopy(vertices[0].coordinates(), 0, oldCenter, 0, n);
+				double centerValue = vertices[0].value();
+				count = 0;
 				for (int vertex = 0; vertex < length; vertex++) {
+					if (vertex == 0) { // onto the best vertex, wherever a clamped step left it
+						System.arraycopy(vertices[bestIndex].coordinates(), 0, vertices[0].coordinates(), 0, n);
+						vertices[0].setValue(vertices[bestIndex].value());
+						continue;
+					}
 					vertices[vertex].increment(variable, change);
 					
 					// save re-evaluation of function
-					if (vertex == 0) { 
-						vertices[vertex].setValue(vertices[bestIndex].value()); 
-					} else if (vertex == oppositeVertex) {
-						vertices[vertex].setValue(vertices[0].value()); 
+					if (vertex == oppositeVertex && Arrays.equals(vertices[vertex].coordinates(), oldCenter)) {
+						vertices[vertex].setValue(centerValue); 
 					} else {
-						vertices[vertex].update(); // for new values
+						pending[count++] = vertex; // for new values
 					}
 				}
+				evaluate(vertices, pending, count, cache, missPoints, missValues);
+				requested += length - 2;
 			}
 		}
+		iterationCount.add(i);
 
-		return vertices[0].coordinates();
+		return new Result(vertices[0], i);
+	}
+
+	/**
+	 * The outcome of one search start.
+	 */
+	private static class Result {
+		/**
+		 * The center of the final pattern.
+		 */
+		final Point center;
+		/**
+		 * Number of iterations completed.
+		 */
+		final int iterations;
+
+		/**
+		 * Create a result.
+		 * <p/>
+		 * @param center see {@link #center}
+		 * @param iterations see {@link #iterations}
+		 */
+		Result(Point center, int iterations) {
+			this.center = center;
+			this.iterations = iterations;
+		}
 	}
 
 	/**
@@ -170,17 +547,78 @@ public abstract class DefaultOptimizer implements Optimizer {
 	 */
 	public class Point extends DataPoint {
 		/**
-		 * Create a point.
+		 * Remembers function values for {@link #update()}, or {@code null}.
+		 */
+		private final EvaluationCache cache;
+
+		/**
+		 * Input keys, made when first asked for.
+		 */
+		private String[] inputKeys = null;
+
+		/**
+		 * Output keys, made when first asked for.
+		 */
+		private String[] outputKeys = null;
+		
+		/**
+		 * Create a point. The coordinates are copied, so points created from
+		 * the same array can be moved independently.
 		 * <p/>
 		 * @param coordinates the action coordinates.
 		 * @param value the Q-Value from the coordinates.
 		 */
 		public Point(double[] coordinates, double value) {			
-			super(coordinates, value);
+			this(coordinates, value, null);
 		}
 		
 		/**
-		 * The data coordinates.
+		 * Create a point that looks up its value in a cache before evaluating
+		 * the function.
+		 * <p/>
+		 * @param coordinates the action coordinates.
+		 * @param value the Q-Value from the coordinates.
+		 * @param cache remembers function values, or {@code null}.
+		 */
+		public Point(double[] coordinates, double value, EvaluationCache cache) {			
+			super(null, coordinates.clone(), null, new double[] {value});
+			this.cache = cache;
+		}
+		
+		/**
+		 * Get the input keys: the index of each coordinate, as text. Made on
+		 * first use, so the search itself never builds them.
+		 * <p/>
+		 * @return the keys.
+		 */
+		@Override
+		public String[] getInputKeys() {
+			if (inputKeys == null) {
+				String[] keys = new String[coordinates().length];
+				for (int i = 0; i < keys.length; i++) {
+					keys[i] = String.valueOf(i);
+				}
+				inputKeys = keys;
+			}
+			return inputKeys;
+		}
+
+		/**
+		 * Get the output keys: {@code "Output"}. Made on first use.
+		 * <p/>
+		 * @return the keys.
+		 */
+		@Override
+		public String[] getOutputKeys() {
+			if (outputKeys == null) {
+				outputKeys = new String[] {"Output"};
+			}
+			return outputKeys;
+		}
+		
+		/**
+		 * The data coordinates. This is the backing array, which changes as
+		 * the point moves.
 		 * 
 		 * @return the coordinates
 		 */
@@ -201,7 +639,7 @@ public abstract class DefaultOptimizer implements Optimizer {
 		 * Update the {@code value} variable.
 		 */
 		public void update() {
-			super.setOutput(0, f(super.getInputs()));
+			super.setOutput(0, evaluate(super.getInputs(), cache));
 		}
 
 		/**
@@ -222,14 +660,80 @@ public abstract class DefaultOptimizer implements Optimizer {
 		 * @param amount the amount to increment by.
 		 */
 		public void increment(int k, double amount) {
-			double[] newCoordinates = super.getInputs().clone();
-			double newCoordinate = newCoordinates[k] + amount;
+			double newCoordinate = super.getInputs()[k] + amount;
 			if (newCoordinate > minimums[k] && newCoordinate < maximums[k]) { //in bounds				
 				setInput(k, newCoordinate);
 			}
 		}
 	}
 
+	/**
+	 * Evaluate the function, using remembered values where possible.
+	 * <p/>
+	 * @param coordinates the domain (input).
+	 * @param cache remembers function values, or {@code null}.
+	 * @return the range (output).
+	 */
+	private double evaluate(double[] coordinates, EvaluationCache cache) {
+		if (cache == null) {
+			evaluationCount.add(1);
+			return f(coordinates);
+		}
+		if (cache.lookup(coordinates)) {
+			return cache.value();
+		}
+		evaluationCount.add(1);
+		double value = f(coordinates);
+		cache.store(value);
+		return value;
+	}
+
+	/**
+	 * Evaluate several vertices with one call to
+	 * {@link #f(double[][], double[])}, using remembered values where
+	 * possible.
+	 * <p/>
+	 * @param vertices the pattern vertices.
+	 * @param pending indices of the vertices to evaluate. Overwritten.
+	 * @param count the number of pending vertices.
+	 * @param cache remembers function values, or {@code null}.
+	 * @param missPoints reusable point arrays, indexed by length. Filled in as
+	 * needed, so one search allocates each length once.
+	 * @param missValues reusable value arrays, indexed by length.
+	 */
+	private void evaluate(Point[] vertices, int[] pending, int count, EvaluationCache cache, double[][][] missPoints, double[][] missValues) {
+		int misses = 0;
+		for (int p = 0; p < count; p++) {
+			Point vertex = vertices[pending[p]];
+			if (cache != null && cache.lookup(vertex.coordinates())) {
+				vertex.setValue(cache.value());
+			} else {
+				pending[misses++] = pending[p];
+			}
+		}
+		if (misses == 0) {
+			return;
+		}
+
+		if (missPoints[misses] == null) {
+			missPoints[misses] = new double[misses][];
+			missValues[misses] = new double[misses];
+		}
+		double[][] points = missPoints[misses];
+		for (int p = 0; p < misses; p++) {
+			points[p] = vertices[pending[p]].coordinates();
+		}
+		double[] values = missValues[misses];
+		evaluationCount.add(misses);
+		f(points, values);
+		for (int p = 0; p < misses; p++) {
+			vertices[pending[p]].setValue(values[p]);
+			if (cache != null) {
+				cache.store(points[p], values[p]);
+			}
+		}
+	}
+
 	/**
 	 * Find which double is better. Whether or not a variable is better is
 	 * determined by the maximize parameter.
@@ -252,14 +756,15 @@ public abstract class DefaultOptimizer implements Optimizer {
 	/**
 	 * Fill an array with random values.
 	 * <p/>
+	 * @param random the random number generator to use.
 	 * @return The array.
 	 */
-	private double[] rands() {
+	private double[] rands(Random random) {
 		double[] toReturn = new double[n];
 		double rangeScale = 2 * stepSize;
 		for (int i = 0; i < n; i++) {
 			double range = (maximums[i] - minimums[i]) * rangeScale;
-			toReturn[i] = Math.random() * range
+			toReturn[i] = random.nextDouble() * range
 				+ minimums[i] + range / 2; // generate random number in range
 		}
 		return toReturn;
@@ -267,4 +772,21 @@ public abstract class DefaultOptimizer implements Optimizer {
 
 	@Override
 	public abstract double f(double[] input);
+
+	/**
+	 * Evaluate the function at several points at once. The search calls this
+	 * once per iteration with every vertex it needs a value for, so a function
+	 * that can share work between points should override it. For example, a
+	 * function backed by a learner can answer every point with one
+	 * {@code SupervisedLearner.query(double[][], double[])}, which scans the
+	 * data once. By default, calls {@link #f(double[])} for each point.
+	 * <p/>
+	 * @param points the coordinates of each point. Must not be modified.
+	 * @param out filled with the function value at each point.
+	 */
+	public void f(double[][] points, double[] out) {
+		for (int i = 0; i < points.length; i++) {
+			out[i] = f(points[i]);
+		}
+	}
 }
\ No newline at end of file
@@ -0,0 +1,247 @@
+package com.shsrobotics.reinforcementlearning.optimizers;
+
+import java.util.Arrays;
+
+/**
+ * Bounded memo of function values by coordinates. Coordinates are snapped to
+ * a lattice far finer than any pattern step, so points reached by different
+ * sequences of steps still match. Entries live in open-addressed primitive
+ * arrays and are dropped all at once by {@link #clear()}, so a lookup or store
+ * allocates nothing. When full, new entries replace old ones.
+ * <p/>
+ * Not thread safe; each search uses its own cache.
+ * <p/>
+ * @author Team 2412.
+ */
+public class EvaluationCache {
+
+	/**
+	 * Lattice spacing as a fraction of each variable range.
+	 */
+	private static final double resolution = 1.0 / (1L << 40);
+
+	/**
+	 * The number of variables.
+	 */
+	private final int n;
+
+	/**
+	 * Minimum variable values.
+	 */
+	private final double[] minimums;
+
+	/**
+	 * Lattice spacing of each variable.
+	 */
+	private final double[] quanta;
+
+	/**
+	 * Maximum number of entries.
+	 */
+	private final int maximumEntries;
+
+	/**
+	 * Lattice coordinates of each slot. Slot {@code i} starts at
+	 * {@code i * n}.
+	 */
+	private final long[] keys;
+
+	/**
+	 * Function value of each slot.
+	 */
+	private final double[] values;
+
+	/**
+	 * Generation each slot was written in. Slots from older generations are
+	 * empty.
+	 */
+	private final int[] generations;
+
+	/**
+	 * The current generation.
+	 */
+	private int generation = 1;
+
+	/**
+	 * Number of entries in the current generation.
+	 */
+	private int entries = 0;
+
+	/**
+	 * Lattice coordinates of the last lookup.
+	 */
+	private final long[] key;
+
+	/**
+	 * Slot of the last lookup: the matching entry on a hit, or where to store
+	 * it on a miss.
+	 */
+	private int slot;
+
+	/**
+	 * Number of lookups that found a value.
+	 */
+	private long hits = 0;
+
+	/**
+	 * Number of lookups that did not find a value.
+	 */
+	private long misses = 0;
+
+	/**
+	 * Create a cache.
+	 * <p/>
+	 * @param maximumEntries how many values to remember.
+	 * @param minimums the minimum domain values.
+	 * @param maximums the maximum domain values.
+	 */
+	public EvaluationCache(int maximumEntries, double[] minimums, double[] maximums) {
+		this.n = minimums.length;
+		this.minimums = minimums;
+		this.maximumEntries = maximumEntries;
+		this.quanta = new double[n];
+		for (int variable = 0; variable < n; variable++) {
+			double range = maximums[variable] - minimums[variable];
+			quanta[variable] = (range > 0) ? range * resolution : 1.0;
+		}
+
+		int capacity = 1;
+		while (capacity < 2 * maximumEntries) {
+			capacity <<= 1; // power of two, at most half full
+		}
+		this.keys = new long[capacity * n];
+		this.values = new double[capacity];
+		this.generations = new int[capacity];
+		this.key = new long[n];
+	}
+
+	/**
+	 * Forget every entry. Hit and miss counts are kept.
+	 */
+	public void clear() {
+		entries = 0;
+		if (++generation == Integer.MAX_VALUE) {
+			Arrays.fill(generations, 0);
+			generation = 1;
+		}
+	}
+
+	/**
+	 * Look up coordinates. On a hit the value is available from
+	 * {@link #value()}; on a miss it can be remembered with
+	 * {@link #store(double)}.
+	 * <p/>
+	 * @param coordinates the coordinates.
+	 * @return true if a value was found.
+	 */
+	public boolean lookup(double[] coordinates) {
+		if (find(coordinates)) {
+			hits++;
+			return true;
+		}
+		misses++;
+		return false;
+	}
+
+	/**
+	 * The value found by the last successful {@link #lookup(double[])}.
+	 * <p/>
+	 * @return the value.
+	 */
+	public double value() {
+		return values[slot];
+	}
+
+	/**
+	 * Remember the value of the coordinates from the last unsuccessful
+	 * {@link #lookup(double[])}.
+	 * <p/>
+	 * @param value the function value.
+	 */
+	public void store(double value) {
+		if (generations[slot] != generation) {
+			if (entries == maximumEntries) {
+				return; // full
+			}
+			generations[slot] = generation;
+			entries++;
+		}
+		System.arraycopy(key, 0, keys, slot * n, n);
+		values[slot] = value;
+	}
+
+	/**
+	 * Remember the value of any coordinates, for values computed after
+	 * several lookups. Not counted as a lookup.
+	 * <p/>
+	 * @param coordinates the coordinates.
+	 * @param value the function value.
+	 */
+	public void store(double[] coordinates, double value) {
+		find(coordinates);
+		store(value);
+	}
+
+	/**
+	 * Find the slot for coordinates, leaving their key in {@link #key}.
+	 * <p/>
+	 * @param coordinates the coordinates.
+	 * @return true if the slot holds a value for them.
+	 */
+	private boolean find(double[] coordinates) {
+		long hash = 1;
+		for (int variable = 0; variable < n; variable++) {
+			long q = Math.round((coordinates[variable] - minimums[variable]) / quanta[variable]);
+			key[variable] = q;
+			hash = 31 * hash + (q ^ (q >>> 32));
+		}
+		hash *= 0x9E3779B97F4A7C15L; // spread bits
+		int mask = values.length - 1;
+		int home = (int) (hash >>> 32) & mask;
+
+		for (int probe = home; ; probe = (probe + 1) & mask) {
+			if (generations[probe] != generation) {
+				slot = (entries < maximumEntries) ? probe : home; // replace when full
+				return false;
+			}
+			if (matches(probe)) {
+				slot = probe;
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Number of lookups that found a value.
+	 * <p/>
+	 * @return the hit count.
+	 */
+	public long hits() {
+		return hits;
+	}
+
+	/**
+	 * Number of lookups that did not find a value.
+	 * <p/>
+	 * @return the miss count.
+	 */
+	public long misses() {
+		return misses;
+	}
+
+	/**
+	 * Whether a slot holds the key of the last lookup.
+	 * <p/>
+	 * @param probe the slot.
+	 * @return true if the keys are equal.
+	 */
+	private boolean matches(int probe) {
+		int offset = probe * n;
+		for (int variable = 0; variable < n; variable++) {
+			if (keys[offset + variable] != key[variable]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
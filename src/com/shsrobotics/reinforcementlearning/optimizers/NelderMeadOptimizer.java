@@ -0,0 +1,181 @@
+package com.shsrobotics.reinforcementlearning.optimizers;
+
+/**
+ * Optimize coordinates with the Nelder-Mead simplex method. Each step usually
+ * costs one or two evaluations, however many variables there are, where
+ * pattern search costs about {@code 2n}. Points that leave the bounds are
+ * projected back onto them. To use this class, extend it and provide a
+ * {@code double f(double[] input)} method.
+ * <p/>
+ * @author Team 2412.
+ */
+public abstract class NelderMeadOptimizer extends BoundedOptimizer {
+
+	/**
+	 * Size of the starting simplex, as a fraction of each variable's range.
+	 */
+	private static final double initialStep = 0.25;
+	/**
+	 * Reflection coefficient.
+	 */
+	private static final double reflection = 1.0;
+	/**
+	 * Expansion coefficient.
+	 */
+	private static final double expansion = 2.0;
+	/**
+	 * Contraction coefficient.
+	 */
+	private static final double contraction = 0.5;
+	/**
+	 * Shrink coefficient.
+	 */
+	private static final double shrink = 0.5;
+
+	/**
+	 * Create an optimizer.
+	 * <p/>
+	 * @param maximumEvaluations the most calls to {@link #f(double[])} per
+	 * search.
+	 * @param minimums the minimum domain values.
+	 * @param maximums the maximum domain values.
+	 */
+	public NelderMeadOptimizer(int maximumEvaluations, double[] minimums, double[] maximums) {
+		super(maximumEvaluations, minimums, maximums);
+	}
+
+	@Override
+	protected void search(double[] start, double stepScale) {
+		// simplex vertices, best first after sorting
+		double[][] vertices = new double[n + 1][];
+		double[] values = new double[n + 1];
+		vertices[0] = start.clone();
+		values[0] = evaluate(vertices[0]);
+		for (int k = 0; k < n; k++) {
+			double[] vertex = start.clone();
+			double step = initialStep * stepScale * range(k);
+			vertex[k] += (vertex[k] + step <= maximums[k]) ? step : -step; // stay inside
+			vertices[k + 1] = vertex;
+			values[k + 1] = evaluate(vertex);
+		}
+
+		double[] centroid = new double[n];
+		double[] reflected = new double[n];
+		double[] trial = new double[n];
+		while (!exhausted()) {
+			sort(vertices, values);
+			if (converged(vertices)) {
+				return;
+			}
+			int worst = n;
+
+			// centroid of all but the worst
+			for (int k = 0; k < n; k++) {
+				double sum = 0.0;
+				for (int vertex = 0; vertex < n; vertex++) {
+					sum += vertices[vertex][k];
+				}
+				centroid[k] = sum / n;
+			}
+
+			move(centroid, vertices[worst], -reflection, reflected);
+			double reflectedValue = evaluate(reflected);
+			if (reflectedValue < values[0]) {
+				move(centroid, vertices[worst], -expansion, trial);
+				double expandedValue = evaluate(trial);
+				if (expandedValue < reflectedValue) {
+					replace(vertices, values, worst, trial, expandedValue);
+				} else {
+					replace(vertices, values, worst, reflected, reflectedValue);
+				}
+			} else if (reflectedValue < values[n - 1]) {
+				replace(vertices, values, worst, reflected, reflectedValue);
+			} else {
+				boolean outside = reflectedValue < values[worst];
+				if (outside) {
+					move(centroid, vertices[worst], -reflection * contraction, trial);
+				} else {
+					move(centroid, vertices[worst], contraction, trial);
+				}
+				double contractedValue = evaluate(trial);
+				if (contractedValue < Math.min(reflectedValue, values[worst])) {
+					replace(vertices, values, worst, trial, contractedValue);
+				} else if (outside) {
+					replace(vertices, values, worst, reflected, reflectedValue);
+				} else {
+					// shrink toward the best vertex
+					for (int vertex = 1; vertex <= n && !exhausted(); vertex++) {
+						move(vertices[0], vertices[vertex], shrink, vertices[vertex]);
+						values[vertex] = evaluate(vertices[vertex]);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Find a point along the line through the centroid and a vertex.
+	 * <p/>
+	 * @param centroid the centroid.
+	 * @param vertex the vertex.
+	 * @param scale where along the line: 0 is the centroid, 1 the vertex, and
+	 * -1 the vertex reflected through the centroid.
+	 * @param out receives the point. May be {@code vertex}.
+	 */
+	private void move(double[] centroid, double[] vertex, double scale, double[] out) {
+		for (int k = 0; k < n; k++) {
+			out[k] = centroid[k] + scale * (vertex[k] - centroid[k]);
+		}
+	}
+
+	/**
+	 * Replace a vertex with a copy of a point.
+	 * <p/>
+	 * @param vertices the simplex.
+	 * @param values the vertex values.
+	 * @param vertex which vertex to replace.
+	 * @param point the new coordinates.
+	 * @param value the new value.
+	 */
+	private void replace(double[][] vertices, double[] values, int vertex, double[] point, double value) {
+		System.arraycopy(point, 0, vertices[vertex], 0, n);
+		values[vertex] = value;
+	}
+
+	/**
+	 * Whether the simplex is smaller than the tolerance.
+	 * <p/>
+	 * @param vertices the simplex, best first.
+	 * @return true if converged.
+	 */
+	private boolean converged(double[][] vertices) {
+		for (int vertex = 1; vertex <= n; vertex++) {
+			if (!converged(vertices[0], vertices[vertex])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Sort the simplex by value, best first. Insertion sort, since the order
+	 * changes little between steps.
+	 * <p/>
+	 * @param vertices the simplex.
+	 * @param values the vertex values.
+	 */
+	private static void sort(double[][] vertices, double[] values) {
+		for (int i = 1; i < values.length; i++) {
+			double[] vertex = vertices[i];
+			double value = values[i];
+			int j = i - 1;
+			while (j >= 0 && values[j] > value) {
+				vertices[j + 1] = vertices[j];
+				values[j + 1] = values[j];
+				j--;
+			}
+			vertices[j + 1] = vertex;
+			values[j + 1] = value;
+		}
+	}
+}
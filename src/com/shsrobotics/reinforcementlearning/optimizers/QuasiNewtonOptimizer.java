@@ -0,0 +1,216 @@
+package com.shsrobotics.reinforcementlearning.optimizers;
+
+/**
+ * Optimize coordinates with a projected BFGS quasi-Newton method. Gradients
+ * are estimated by finite differences, at {@code n} evaluations each, and a
+ * curvature estimate built from successive gradients lets each step head
+ * almost straight for a smooth optimum. Variables held at a bound by the
+ * gradient are left out of the step, and every trial point is projected onto
+ * the bounds. Best suited to smooth functions; on noisy ones, prefer
+ * {@link NelderMeadOptimizer}. To use this class, extend it and provide a
+ * {@code double f(double[] input)} method.
+ * <p/>
+ * @author Team 2412.
+ */
+public abstract class QuasiNewtonOptimizer extends BoundedOptimizer {
+
+	/**
+	 * Finite difference step, as a fraction of each variable's range.
+	 */
+	private static final double differenceStep = 1e-6;
+	/**
+	 * Length of the first step, as a fraction of each variable's range.
+	 */
+	private static final double initialStep = 0.25;
+	/**
+	 * Fraction of the predicted decrease a step must achieve to be accepted.
+	 */
+	private static final double sufficientDecrease = 1e-4;
+
+	/**
+	 * Create an optimizer.
+	 * <p/>
+	 * @param maximumEvaluations the most calls to {@link #f(double[])} per
+	 * search.
+	 * @param minimums the minimum domain values.
+	 * @param maximums the maximum domain values.
+	 */
+	public QuasiNewtonOptimizer(int maximumEvaluations, double[] minimums, double[] maximums) {
+		super(maximumEvaluations, minimums, maximums);
+	}
+
+	@Override
+	protected void search(double[] start, double stepScale) {
+		double[] point = start.clone();
+		double value = evaluate(point);
+		double[] gradient = new double[n];
+		gradient(point, value, gradient);
+
+		double[][] inverse = identity(); // inverse Hessian estimate
+		double[] direction = new double[n];
+		double[] trial = new double[n];
+		double[] trialGradient = new double[n];
+		double[] step = new double[n];
+		double[] change = new double[n];
+		boolean first = true;
+		while (!exhausted()) {
+			// descent direction over the variables not held at a bound
+			double slope = direction(inverse, point, gradient, direction);
+			if (slope >= 0) {
+				inverse = identity(); // curvature estimate went bad, start over
+				first = true;
+				slope = direction(inverse, point, gradient, direction);
+				if (slope >= 0) {
+					return; // stationary within the bounds
+				}
+			}
+
+			// first step is scaled to the bounds; later ones trust the curvature
+			double length = 1.0;
+			if (first) {
+				double largest = 0.0;
+				for (int k = 0; k < n; k++) {
+					largest = Math.max(largest, Math.abs(direction[k]) / range(k));
+				}
+				length = initialStep * stepScale / largest;
+				first = false;
+			}
+
+			// backtrack until the step decreases the value enough
+			double trialValue;
+			while (true) {
+				for (int k = 0; k < n; k++) {
+					trial[k] = point[k] + length * direction[k];
+				}
+				project(trial);
+				double predicted = 0.0;
+				for (int k = 0; k < n; k++) {
+					predicted += gradient[k] * (trial[k] - point[k]);
+				}
+				if (converged(point, trial)) {
+					return; // steps too small to matter
+				}
+				trialValue = evaluate(trial);
+				if (trialValue <= value + sufficientDecrease * predicted) {
+					break;
+				}
+				if (exhausted()) {
+					return;
+				}
+				length /= 2;
+			}
+			if (exhausted()) {
+				return;
+			}
+
+			gradient(trial, trialValue, trialGradient);
+			double curvature = 0.0;
+			for (int k = 0; k < n; k++) {
+				step[k] = trial[k] - point[k];
+				change[k] = trialGradient[k] - gradient[k];
+				curvature += step[k] * change[k];
+			}
+			if (curvature > 1e-12) {
+				update(inverse, step, change, curvature);
+			}
+
+			System.arraycopy(trial, 0, point, 0, n);
+			System.arraycopy(trialGradient, 0, gradient, 0, n);
+			value = trialValue;
+		}
+	}
+
+	/**
+	 * Estimate the gradient by finite differences, stepping back from an
+	 * upper bound instead of across it.
+	 * <p/>
+	 * @param point the coordinates.
+	 * @param value the value at {@code point}.
+	 * @param out receives the gradient.
+	 */
+	private void gradient(double[] point, double value, double[] out) {
+		double[] probe = point.clone();
+		for (int k = 0; k < n; k++) {
+			double h = differenceStep * range(k);
+			if (point[k] + h > maximums[k]) {
+				h = -h;
+			}
+			probe[k] = point[k] + h;
+			out[k] = (evaluate(probe) - value) / h;
+			probe[k] = point[k];
+		}
+	}
+
+	/**
+	 * Find the quasi-Newton direction, leaving out variables at a bound whose
+	 * gradient points out of the box.
+	 * <p/>
+	 * @param inverse the inverse Hessian estimate.
+	 * @param point the coordinates.
+	 * @param gradient the gradient.
+	 * @param out receives the direction.
+	 * @return the slope along the direction, negative for descent.
+	 */
+	private double direction(double[][] inverse, double[] point, double[] gradient, double[] out) {
+		boolean[] held = new boolean[n];
+		for (int k = 0; k < n; k++) {
+			held[k] = (point[k] <= minimums[k] && gradient[k] > 0)
+				|| (point[k] >= maximums[k] && gradient[k] < 0);
+		}
+		double slope = 0.0;
+		for (int i = 0; i < n; i++) {
+			double sum = 0.0;
+			if (!held[i]) {
+				for (int j = 0; j < n; j++) {
+					if (!held[j]) {
+						sum -= inverse[i][j] * gradient[j];
+					}
+				}
+			}
+			out[i] = sum;
+			slope += sum * gradient[i];
+		}
+		return slope;
+	}
+
+	/**
+	 * Apply the BFGS update to the inverse Hessian estimate.
+	 * <p/>
+	 * @param inverse the estimate. Changed in place.
+	 * @param step the change in coordinates.
+	 * @param change the change in gradient.
+	 * @param curvature the dot product of {@code step} and {@code change}.
+	 */
+	private void update(double[][] inverse, double[] step, double[] change, double curvature) {
+		double[] product = new double[n]; // inverse * change
+		double scaled = 0.0; // change * inverse * change
+		for (int i = 0; i < n; i++) {
+			double sum = 0.0;
+			for (int j = 0; j < n; j++) {
+				sum += inverse[i][j] * change[j];
+			}
+			product[i] = sum;
+			scaled += change[i] * sum;
+		}
+		double factor = (curvature + scaled) / (curvature * curvature);
+		for (int i = 0; i < n; i++) {
+			for (int j = 0; j < n; j++) {
+				inverse[i][j] += factor * step[i] * step[j]
+					- (product[i] * step[j] + step[i] * product[j]) / curvature;
+			}
+		}
+	}
+
+	/**
+	 * Create an identity matrix.
+	 * <p/>
+	 * @return the matrix.
+	 */
+	private double[][] identity() {
+		double[][] matrix = new double[n][n];
+		for (int k = 0; k < n; k++) {
+			matrix[k][k] = 1.0;
+		}
+		return matrix;
+	}
+}
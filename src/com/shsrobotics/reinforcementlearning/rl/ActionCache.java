@@ -0,0 +1,202 @@
+package com.shsrobotics.reinforcementlearning.rl;
+
+import com.shsrobotics.reinforcementlearning.util.Metrics;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the best action for recently seen states. States are snapped to a
+ * grid over the state ranges, so an agent that sits in nearly the same state
+ * reuses one answer. Each entry records the learner version it was computed
+ * from, and is ignored once the learner has changed. The least recently used
+ * entry is dropped when full.
+ * <p/>
+ * Thread safe. Lookups hold a short lock on the cache only.
+ * <p/>
+ * @author Team 2412.
+ */
+class ActionCache {
+
+	/**
+	 * Minimum value of each state parameter.
+	 */
+	private final double[] minimums;
+
+	/**
+	 * Cells per unit of each state parameter.
+	 */
+	private final double[] scales;
+
+	/**
+	 * Lookups that found a current entry, over every agent.
+	 */
+	private static final Metrics.Counter hitCount = Metrics.getDefault().counter("Action Cache Hits");
+
+	/**
+	 * Lookups that did not, over every agent.
+	 */
+	private static final Metrics.Counter missCount = Metrics.getDefault().counter("Action Cache Misses");
+
+	/**
+	 * Cells along each state parameter.
+	 */
+	private final int cells;
+
+	/**
+	 * Entries by cell, least recently used first.
+	 */
+	private final LinkedHashMap<Cell, CachedAction> entries;
+
+	/**
+	 * Number of lookups that found a current entry.
+	 */
+	private long hits = 0;
+
+	/**
+	 * Number of lookups that did not.
+	 */
+	private long misses = 0;
+
+	/**
+	 * Create an empty cache.
+	 * <p/>
+	 * @param capacity the most entries to hold.
+	 * @param cells how many cells to divide each state range into.
+	 * @param minimums minimum state values.
+	 * @param maximums maximum state values.
+	 */
+	ActionCache(final int capacity, int cells, double[] minimums, double[] maximums) {
+		this.minimums = minimums;
+		this.cells = cells;
+		this.scales = new double[minimums.length];
+		for (int j = 0; j < minimums.length; j++) {
+			double range = maximums[j] - minimums[j];
+			scales[j] = (range > 0) ? cells / range : 0.0;
+		}
+		this.entries = new LinkedHashMap<Cell, CachedAction>(2 * capacity, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Cell, CachedAction> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Find the cell of a state.
+	 * <p/>
+	 * @param state the state values.
+	 * @return the cell.
+	 */
+	Cell cell(double[] state) {
+		int[] coordinates = new int[state.length];
+		for (int j = 0; j < state.length; j++) {
+			int cell = (int) Math.floor((state[j] - minimums[j]) * scales[j]);
+			coordinates[j] = Math.max(0, Math.min(cells - 1, cell));
+		}
+		return new Cell(coordinates);
+	}
+
+	/**
+	 * Look up the action for a cell.
+	 * <p/>
+	 * @param cell the cell.
+	 * @param version the current learner version.
+	 * @return a copy of the action values, or {@code null} if there is no
+	 * current entry.
+	 */
+	synchronized double[] lookup(Cell cell, long version) {
+		CachedAction entry = entries.get(cell);
+		if (entry == null || entry.version != version) {
+			misses++;
+			missCount.add(1);
+			return null;
+		}
+		hits++;
+		hitCount.add(1);
+		return entry.action.clone();
+	}
+
+	/**
+	 * Remember the action for a cell.
+	 * <p/>
+	 * @param cell the cell.
+	 * @param version the learner version the action was computed from.
+	 * @param action the action values. Copied.
+	 */
+	synchronized void store(Cell cell, long version, double[] action) {
+		entries.put(cell, new CachedAction(version, action.clone()));
+	}
+
+	/**
+	 * Fraction of this cache's lookups that found a current entry. The
+	 * {@code "Action Cache Hits"} and {@code "Action Cache Misses"} metrics
+	 * count lookups over every agent.
+	 * <p/>
+	 * @return the hit rate, from 0 to 1, or 0 before any lookups.
+	 */
+	synchronized double hitRate() {
+		long lookups = hits + misses;
+		return (lookups == 0) ? 0.0 : (double) hits / lookups;
+	}
+
+	/**
+	 * A grid cell over the state ranges.
+	 */
+	static class Cell {
+		/**
+		 * Cell along each state parameter.
+		 */
+		private final int[] coordinates;
+
+		/**
+		 * Hash of the coordinates.
+		 */
+		private final int hash;
+
+		/**
+		 * Create a cell.
+		 * <p/>
+		 * @param coordinates see {@link #coordinates}
+		 */
+		Cell(int[] coordinates) {
+			this.coordinates = coordinates;
+			this.hash = Arrays.hashCode(coordinates);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof Cell && Arrays.equals(coordinates, ((Cell) other).coordinates);
+		}
+	}
+
+	/**
+	 * A remembered action.
+	 */
+	private static class CachedAction {
+		/**
+		 * Learner version the action was computed from.
+		 */
+		final long version;
+		/**
+		 * The action values.
+		 */
+		final double[] action;
+
+		/**
+		 * Create an entry.
+		 * <p/>
+		 * @param version see {@link #version}
+		 * @param action see {@link #action}
+		 */
+		CachedAction(long version, double[] action) {
+			this.version = version;
+			this.action = action;
+		}
+	}
+}
@@ -0,0 +1,409 @@
+package com.shsrobotics.reinforcementlearning.rl;
+
+import com.shsrobotics.reinforcementlearning.optimizers.DefaultOptimizer;
+import com.shsrobotics.reinforcementlearning.supervisedlearners.KNNLearner;
+import com.shsrobotics.reinforcementlearning.util.DataBatch;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * A Q-learning agent over continuous states and actions. Q-values are
+ * predicted by a {@link KNNLearner} over the state and action values, and the
+ * best action is found with a {@link DefaultOptimizer}.
+ * <p/>
+ * Transitions are learned in batches by fitted-Q backups. Each transition's
+ * target is {@code reward + discountFactor * max Q(newState, a)}, where the
+ * maximum is found by searching the current learner. The searches of a batch
+ * are independent, so they run in parallel; the targets are then added to the
+ * learner together. With replay on, each replayed minibatch is backed up the
+ * same way, adding a minibatch of points per transition; bound the learner
+ * with {@link KNNLearner#setCondensation(int, double)} when replaying for
+ * long.
+ * <p/>
+ * @author Team 2412.
+ */
+public class QLearner extends RLAgent {
+
+	/**
+	 * Pool shared by agents that have not been given their own.
+	 */
+	private static ForkJoinPool sharedPool = null;
+
+	/**
+	 * The Q-function, over state values followed by action values.
+	 */
+	private final KNNLearner learner;
+
+	/**
+	 * Pattern search iterations per action search.
+	 */
+	private final int iterations;
+
+	/**
+	 * Pattern search tolerance, as a fraction of each action range.
+	 */
+	private final double tolerance;
+
+	/**
+	 * Starting step of a warm-started action search, as a fraction of the
+	 * usual one, or 0 to always search from scratch.
+	 */
+	private final double warmStartStep;
+
+	/**
+	 * Transitions waiting to be backed up.
+	 */
+	private final ReplayBuffer.Batch pending;
+
+	/**
+	 * Number of transitions in {@link #pending}.
+	 */
+	private int pendingCount = 0;
+
+	/**
+	 * An action searcher for each thread, since searchers hold per-search
+	 * state.
+	 */
+	private final ThreadLocal<Maximizer> maximizers = new ThreadLocal<Maximizer>() {
+		@Override
+		protected Maximizer initialValue() {
+			return new Maximizer();
+		}
+	};
+
+	/**
+	 * Pool to run backups on, or {@code null} to use the shared pool.
+	 */
+	private ForkJoinPool pool = null;
+
+	/**
+	 * Create a Q-learning agent.
+	 * <p/>
+	 * @param actions see {@link #actionNames}
+	 * @param states see {@link #stateNames}
+	 * @param ranges see {@link RLAgent#RLAgent(String[], String[], Map, Map)}
+	 * @param options map of agent options. Accepts every {@link RLAgent}
+	 * option, and:
+	 *		<ul>
+	 *			<li>{@code "Optimizer Iterations"} -- pattern search
+	 *				iterations per action search. Defaults to 50.</li>
+	 *			<li>{@code "Update Batch Size"} -- transitions to collect
+	 *				before backing them up together. Defaults to 32.</li>
+	 *			<li>{@code "Optimizer Tolerance"} -- stop an action search
+	 *				once its steps are below this fraction of each action
+	 *				range. Defaults to 0, running every iteration.</li>
+	 *			<li>{@code "Warm Start Step"} -- start each action request's
+	 *				search from the last action chosen on the same thread,
+	 *				with the starting step scaled by this. Defaults to 0,
+	 *				off. Pays off with a tolerance, which lets the short
+	 *				search end early.</li>
+	 *		</ul>
+	 */
+	public QLearner(String[] actions, String[] states, Map<String, double[]> ranges, Map<String, Number> options) {
+		super(actions, states, ranges, options, new KNNLearner(
+			join(ranges.get("Minimum State Values"), ranges.get("Minimum Action Values")),
+			join(ranges.get("Maximum State Values"), ranges.get("Maximum Action Values"))));
+		this.learner = (KNNLearner) supervisedLearner;
+
+		if (options.containsKey("Optimizer Iterations")) {
+			this.iterations = options.get("Optimizer Iterations").intValue();
+		} else {
+			this.iterations = 50; // default
+		}
+
+		if (options.containsKey("Optimizer Tolerance")) {
+			this.tolerance = options.get("Optimizer Tolerance").doubleValue();
+		} else {
+			this.tolerance = 0.0; // default
+		}
+
+		if (options.containsKey("Warm Start Step")) {
+			this.warmStartStep = options.get("Warm Start Step").doubleValue();
+		} else {
+			this.warmStartStep = 0.0; // default
+		}
+
+		int batchSize = 32; // default
+		if (options.containsKey("Update Batch Size")) {
+			batchSize = Math.max(1, options.get("Update Batch Size").intValue());
+		}
+		this.pending = new ReplayBuffer.Batch(batchSize, this.states, this.actions);
+	}
+
+	/**
+	 * Get the Q-function.
+	 * <p/>
+	 * @return the learner.
+	 */
+	public KNNLearner getLearner() {
+		return learner;
+	}
+
+	/**
+	 * Set the pool to run backups on.
+	 * <p/>
+	 * @param pool the new pool, or {@code null} to use a pool shared by all
+	 * agents.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Back up every waiting transition now, rather than when the batch fills.
+	 * Safe to call while transitions are being learned: every backup holds
+	 * the lock on {@link #pending}, so the learner only ever has one writer.
+	 */
+	public void flush() {
+		synchronized (pending) {
+			if (pendingCount > 0) {
+				backup(pending.state, pending.action, pending.nextState, pending.reward, pendingCount);
+				pendingCount = 0;
+				learnerChanged();
+			}
+		}
+	}
+
+	@Override
+	protected double[] query(State state) {
+		if (learner.size() == 0) {
+			return rands(); // nothing learned yet
+		}
+		Maximizer maximizer = maximizers.get();
+		if (warmStartStep > 0 && maximizer.last != null) {
+			maximizer.last = maximizer.near(state.get(), maximizer.last);
+		} else {
+			maximizer.last = maximizer.best(state.get());
+		}
+		return maximizer.last.clone();
+	}
+
+	@Override
+	protected boolean updateSupervisedLearner(State state, Action action, State newState, double reward) {
+		synchronized (pending) {
+			int i = pendingCount++;
+			System.arraycopy(state.get(), 0, pending.state, i * states, states);
+			System.arraycopy(action.get(), 0, pending.action, i * actions, actions);
+			System.arraycopy(newState.get(), 0, pending.nextState, i * states, states);
+			pending.reward[i] = reward;
+			if (pendingCount < pending.size) {
+				return false; // only buffered; cached actions are still good
+			}
+			backup(pending.state, pending.action, pending.nextState, pending.reward, pendingCount);
+			pendingCount = 0;
+			return true;
+		}
+	}
+
+	@Override
+	protected boolean train(ReplayBuffer.Batch batch) {
+		synchronized (pending) { // the same lock as flush()
+			backup(batch.state, batch.action, batch.nextState, batch.reward, batch.size);
+		}
+		return true;
+	}
+
+	/**
+	 * Compute fitted-Q targets for a batch of transitions in parallel, then
+	 * add them to the learner in one update.
+	 * <p/>
+	 * @param stateValues the starting states, one after another.
+	 * @param actionValues the actions, one after another.
+	 * @param nextStateValues the resulting states, one after another.
+	 * @param rewards the rewards.
+	 * @param count the number of transitions.
+	 */
+	private void backup(final double[] stateValues, double[] actionValues, final double[] nextStateValues, final double[] rewards, int count) {
+		final double[] targets = new double[count];
+		if (learner.size() == 0) {
+			System.arraycopy(rewards, 0, targets, 0, count); // no future value known yet
+		} else {
+			ForkJoinPool executor = getPool();
+			int chunks = Math.min(count, executor.getParallelism());
+			List<Callable<Void>> tasks = new ArrayList<>(chunks);
+			for (int chunk = 0; chunk < chunks; chunk++) {
+				final int from = chunk * count / chunks;
+				final int to = (chunk + 1) * count / chunks;
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						Maximizer maximizer = maximizers.get();
+						double[] next = new double[states];
+						for (int i = from; i < to; i++) {
+							System.arraycopy(nextStateValues, i * states, next, 0, states);
+							targets[i] = rewards[i] + discountFactor * maximizer.bestValue(next);
+						}
+						return null;
+					}
+				});
+			}
+			for (Future<Void> result : executor.invokeAll(tasks)) {
+				try {
+					result.get();
+				} catch (ExecutionException e) {
+					throw new Error("Backup failed.", e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new Error("Interrupted.", e);
+				}
+			}
+		}
+
+		DataBatch batch = new DataBatch(states + actions, 1, count);
+		for (int i = 0; i < count; i++) {
+			int row = batch.addRow();
+			System.arraycopy(stateValues, i * states, batch.inputs(), row * (states + actions), states);
+			System.arraycopy(actionValues, i * actions, batch.inputs(), row * (states + actions) + states, actions);
+			batch.outputs()[row] = targets[i];
+		}
+		learner.update(batch);
+	}
+
+	/**
+	 * Get the pool to run backups on.
+	 * <p/>
+	 * @return the pool.
+	 */
+	private ForkJoinPool getPool() {
+		if (pool != null) {
+			return pool;
+		}
+		synchronized (QLearner.class) {
+			if (sharedPool == null) {
+				sharedPool = new ForkJoinPool();
+			}
+			return sharedPool;
+		}
+	}
+
+	/**
+	 * Join two arrays.
+	 * <p/>
+	 * @param a the first values.
+	 * @param b the values to follow them.
+	 * @return the joined array.
+	 */
+	private static double[] join(double[] a, double[] b) {
+		double[] joined = new double[a.length + b.length];
+		System.arraycopy(a, 0, joined, 0, a.length);
+		System.arraycopy(b, 0, joined, a.length, b.length);
+		return joined;
+	}
+
+	/**
+	 * Searches for the action with the highest Q-value in a state.
+	 */
+	private class Maximizer extends DefaultOptimizer {
+		/**
+		 * The state being searched.
+		 */
+		private double[] state;
+
+		/**
+		 * The last action requested on this thread, or {@code null}.
+		 */
+		private double[] last = null;
+
+		/**
+		 * Learner inputs for a single evaluation: the state, then the action.
+		 */
+		private final double[] row = new double[states + actions];
+
+		/**
+		 * Learner inputs for batched evaluations, indexed by batch size. Made
+		 * the first time each size is needed and reused after that.
+		 */
+		private double[][][] rows = new double[0][][];
+
+		/**
+		 * Number of searches started, so each buffer knows whose state it
+		 * holds.
+		 */
+		private int search = 0;
+
+		/**
+		 * The search whose state each buffer in {@link #rows} holds.
+		 */
+		private int[] filled = new int[0];
+
+		/**
+		 * Create a searcher over the action ranges.
+		 */
+		Maximizer() {
+			super(iterations, minimumActionValues, maximumActionValues);
+			setTolerance(tolerance);
+		}
+
+		/**
+		 * Find the best action.
+		 * <p/>
+		 * @param state the state values.
+		 * @return the action values.
+		 */
+		double[] best(double[] state) {
+			this.state = state;
+			search++;
+			return maximize();
+		}
+
+		/**
+		 * Find the best action, searching near a previous one.
+		 * <p/>
+		 * @param state the state values.
+		 * @param start the action to start from.
+		 * @return the action values.
+		 */
+		double[] near(double[] state, double[] start) {
+			this.state = state;
+			search++;
+			return maximize(start, warmStartStep);
+		}
+
+		/**
+		 * Find the Q-value of the best action.
+		 * <p/>
+		 * @param state the state values.
+		 * @return the highest Q-value found.
+		 */
+		double bestValue(double[] state) {
+			best(state);
+			return getBestValue(); // already evaluated by the search
+		}
+
+		@Override
+		public double f(double[] action) {
+			System.arraycopy(state, 0, row, 0, states);
+			System.arraycopy(action, 0, row, states, actions);
+			return learner.query(row);
+		}
+
+		@Override
+		public void f(double[][] points, double[] out) {
+			int count = points.length;
+			if (count >= rows.length) {
+				rows = Arrays.copyOf(rows, count + 1);
+				filled = Arrays.copyOf(filled, count + 1);
+			}
+			if (rows[count] == null) {
+				rows[count] = new double[count][states + actions];
+				filled[count] = search - 1;
+			}
+			double[][] inputs = rows[count];
+			boolean newState = filled[count] != search;
+			filled[count] = search;
+			for (int i = 0; i < count; i++) {
+				if (newState) {
+					System.arraycopy(state, 0, inputs[i], 0, states);
+				}
+				System.arraycopy(points[i], 0, inputs[i], states, actions);
+			}
+			learner.query(inputs, out); // one pass over the data for every vertex
+		}
+	}
+}
@@ -2,17 +2,33 @@ package com.shsrobotics.reinforcementlearning.rl;
 
 import com.shsrobotics.reinforcementlearning.supervisedlearners.SupervisedLearner;
 import com.shsrobotics.reinforcementlearning.util.DataPoint;
+import com.shsrobotics.reinforcementlearning.util.Metrics;
 import java.util.Map;
+import java.util.Random;
 
 /**
  * A Reinforcement Learning agent.
+ * <p/>
+ * Transitions may be recorded with {@link #learn(State, Action, State, double)}
+ * from one thread while others call {@link #requestAction(State)}. Recording
+ * never blocks action requests; they read the learner without locking.
  * @author Team 2412
  */
 public abstract class RLAgent {
+	/**
+	 * Latency of action requests.
+	 */
+	private static final Metrics.Histogram requestLatency = Metrics.getDefault().histogram("Agent Request");
+	
+	/**
+	 * Transitions recorded.
+	 */
+	private static final Metrics.Counter transitionCount = Metrics.getDefault().counter("Agent Transitions");
+	
 	/**
 	 * Mode the learner is operating in.
 	 */
-	protected Mode currentMode = Mode.kOff;
+	protected volatile Mode currentMode = Mode.kOff;
 	
 	/**
 	 * Learning rate of the learner.
@@ -70,7 +86,42 @@ public abstract class RLAgent {
 	/**
 	 * The supervised learner to predict rewards and/or state values.
 	 */
-	protected final SupervisedLearner supervisedLearner = null;
+	protected final SupervisedLearner supervisedLearner;
+	
+	/**
+	 * Held while recording a transition, so only one thread writes to the
+	 * learner at a time.
+	 */
+	private final Object writeLock = new Object();
+	
+	/**
+	 * Recent transitions for experience replay, or {@code null} if replay is
+	 * off.
+	 */
+	protected final ReplayBuffer replay;
+	
+	/**
+	 * Minibatch passed to {@link #train(ReplayBuffer.Batch)}, or {@code null}
+	 * if replay is off.
+	 */
+	private final ReplayBuffer.Batch replayBatch;
+	
+	/**
+	 * Random numbers for drawing replay minibatches.
+	 */
+	private final Random replayRandom = new Random();
+	
+	/**
+	 * Best actions for recently seen states, or {@code null} if every request
+	 * queries the learner.
+	 */
+	private final ActionCache actionCache;
+	
+	/**
+	 * Incremented whenever the learner changes, so cached actions computed
+	 * from older versions are ignored.
+	 */
+	private volatile long learnerVersion = 0;
 	
 	/**
 	 * Create an Reinforcement Learning agent.
@@ -88,9 +139,30 @@ public abstract class RLAgent {
 	 *			<li>{@code "Learning Rate"} -- {@link #learningRate}</li>
 	 *			<li>{@code "Discount Factor"} -- {@link #discountFactor}</li>
 	 *			<li>{@code "Accuracy"} -- {@link #accuracy}</li>
+	 *			<li>{@code "Replay Capacity"} -- how many transitions
+	 *				{@link #replay} holds, or 0 for no replay</li>
+	 *			<li>{@code "Replay Batch Size"} -- transitions per
+	 *				{@link #train(ReplayBuffer.Batch)} call</li>
+	 *			<li>{@code "Action Cache Size"} -- how many states to remember
+	 *				the best action for, or 0 for no cache</li>
+	 *			<li>{@code "Action Cache Resolution"} -- how many cells to
+	 *				divide each state range into for the cache</li>
 	 *		</ul>
 	 */
 	protected  RLAgent(String[] actions, String[] states, Map<String, double[]> ranges, Map<String, Number> options) {
+		this(actions, states, ranges, options, null);
+	}
+	
+	/**
+	 * Create an Reinforcement Learning agent backed by a supervised learner.
+	 * @param actions see {@link #actionNames}
+	 * @param states see {@link #stateNames}
+	 * @param ranges see {@link #RLAgent(String[], String[], Map, Map)}
+	 * @param options see {@link #RLAgent(String[], String[], Map, Map)}
+	 * @param supervisedLearner see {@link #supervisedLearner}
+	 */
+	protected RLAgent(String[] actions, String[] states, Map<String, double[]> ranges, Map<String, Number> options, SupervisedLearner supervisedLearner) {
+		this.supervisedLearner = supervisedLearner;
 		this.actionNames = actions;
 		this.actions = actions.length;
 		this.stateNames = states;
@@ -118,6 +190,36 @@ public abstract class RLAgent {
 		maximumActionValues = ranges.get("Maximum Action Values");
 		minimumStateValues = ranges.get("Minimum State Values");
 		maximumStateValues = ranges.get("Maximum State Values");
+		
+		int replayCapacity = 0; // default
+		if (options.containsKey("Replay Capacity")) {
+			replayCapacity = options.get("Replay Capacity").intValue();
+		}
+		int replayBatchSize = 32; // default
+		if (options.containsKey("Replay Batch Size")) {
+			replayBatchSize = options.get("Replay Batch Size").intValue();
+		}
+		if (replayCapacity > 0) {
+			replay = new ReplayBuffer(replayCapacity, this.states, this.actions, replayRandom);
+			replayBatch = new ReplayBuffer.Batch(replayBatchSize, this.states, this.actions);
+		} else {
+			replay = null;
+			replayBatch = null;
+		}
+		
+		int actionCacheSize = 0; // default
+		if (options.containsKey("Action Cache Size")) {
+			actionCacheSize = options.get("Action Cache Size").intValue();
+		}
+		int actionCacheResolution = 64; // default
+		if (options.containsKey("Action Cache Resolution")) {
+			actionCacheResolution = options.get("Action Cache Resolution").intValue();
+		}
+		if (actionCacheSize > 0) {
+			actionCache = new ActionCache(actionCacheSize, actionCacheResolution, minimumStateValues, maximumStateValues);
+		} else {
+			actionCache = null;
+		}
 	}
 	
 	/**
@@ -127,24 +229,55 @@ public abstract class RLAgent {
 	 * {@link Mode}, then some actions will be random.
 	 */
 	public final Action requestAction(State state) {
+		long start = requestLatency.start();
 		double exploreCutoff = learningRate;        
         double[] actionValues = new double[actions];
+        Mode mode = currentMode;
         
-        if (currentMode.chooseBestOption) { // check modes
+        if (mode.chooseBestOption) { // check modes
 			exploreCutoff = 0.0;
 		}
-        if (!currentMode.allowActionRequests || !currentMode.enabled) {
+        if (!mode.allowActionRequests || !mode.enabled) {
             throw new Error("Wrong learning mode.");
         }
         
         if (Math.random() < exploreCutoff) { // choose random values
             actionValues = rands();
-        } else {
+        } else if (actionCache != null) {
+			long version = learnerVersion; // before querying, so a change during the query is caught
+			ActionCache.Cell cell = actionCache.cell(state.get());
+			actionValues = actionCache.lookup(cell, version);
+			if (actionValues == null) {
+				actionValues = query(state);
+				actionCache.store(cell, version, actionValues);
+			}
+		} else {
 			actionValues = query(state);
 		}
+		requestLatency.stop(start);
 		return new Action(actionNames, actionValues);
 	}
 	
+	/**
+	 * Fraction of this agent's action requests answered from the action
+	 * cache. Hits and misses over every agent are also recorded as the
+	 * {@code "Action Cache Hits"} and {@code "Action Cache Misses"} metrics.
+	 * @return the hit rate, from 0 to 1, or 0 if the cache is off or unused.
+	 */
+	public double getActionCacheHitRate() {
+		return (actionCache == null) ? 0.0 : actionCache.hitRate();
+	}
+	
+	/**
+	 * Mark the learner as changed, so cached actions are recomputed. Called by
+	 * {@link #learn(State, Action, State, double)} when an update reports a
+	 * change; subclasses that change the learner any other way should call it
+	 * too.
+	 */
+	protected final void learnerChanged() {
+		learnerVersion++; // racing increments still move past every cached version
+	}
+	
 	/**
 	 * Return the correct action for the given state.
 	 * @param state the current {@link State}.
@@ -153,13 +286,59 @@ public abstract class RLAgent {
 	protected abstract double[] query(State state);
 	
 	/**
-	 * Update the supervised learner with a new data point.
+	 * Record a transition. Calls from different threads are applied one at a
+	 * time; action requests continue meanwhile. With replay on, the transition
+	 * is also stored, and once enough are stored a random minibatch of them is
+	 * passed to {@link #train(ReplayBuffer.Batch)}.
+	 * @param state the {@link State} the agent was in.
+	 * @param action the {@link Action} preformed.
+	 * @param newState the resultant state.
+	 * @param reward the reward received.
+	 */
+	public final void learn(State state, Action action, State newState, double reward) {
+		if (!currentMode.enabled) {
+			throw new Error("Wrong learning mode.");
+		}
+		synchronized (writeLock) {
+			boolean changed = updateSupervisedLearner(state, action, newState, reward);
+			if (replay != null) {
+				replay.append(state.get(), action.get(), newState.get(), reward);
+				if (replay.size() >= replayBatch.size) {
+					replay.sample(replayBatch, replayRandom);
+					changed |= train(replayBatch);
+				}
+			}
+			if (changed) {
+				learnerChanged();
+			}
+		}
+		transitionCount.add(1);
+	}
+	
+	/**
+	 * Learn from a minibatch of replayed transitions. Called by
+	 * {@link #learn(State, Action, State, double)} with the same guarantees as
+	 * {@link #updateSupervisedLearner(State, Action, State, double)}. Does
+	 * nothing unless overridden.
+	 * @param batch the transitions. Reused between calls.
+	 * @return true if the learner changed, so cached actions are stale.
+	 */
+	protected boolean train(ReplayBuffer.Batch batch) {
+		return false;
+	}
+	
+	/**
+	 * Update the supervised learner with a new data point. Only called by one
+	 * thread at a time, but may run while {@link #query(State)} is running on
+	 * others.
 	 * @param state the {@link State} the agent was in.
 	 * @param action the {@link Action} preformed.
 	 * @param newState the resultant state.
 	 * @param reward the reward received.
+	 * @return true if the learner changed, so cached actions are stale. Agents
+	 * that only buffer the transition for later return false.
 	 */
-	protected abstract void updateSupervisedLearner(State state, Action action, State newState, double reward);
+	protected abstract boolean updateSupervisedLearner(State state, Action action, State newState, double reward);
 	
 	/**
 	 * Set the learner mode.
@@ -266,10 +445,10 @@ public abstract class RLAgent {
 		 */
 		public State(String[] keys, double[] values) {
 			super(keys, values, true);
-			if (keys.length != actions) {
+			if (keys.length != states) {
 				throw new Error("Incorrect key length");
 			}
-			if (values.length != actions) {
+			if (values.length != states) {
 				throw new Error("Incorrect value length");
 			}
 		}
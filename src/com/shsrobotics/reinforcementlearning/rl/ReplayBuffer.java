@@ -0,0 +1,287 @@
+package com.shsrobotics.reinforcementlearning.rl;
+
+import java.util.Random;
+
+/**
+ * Fixed-capacity store of past transitions for experience replay. Each
+ * transition is a state, the action taken, the resulting state and the reward,
+ * kept in flat primitive blocks so a full buffer allocates nothing. Appending
+ * and drawing each sample take constant time. Once full, each new transition
+ * replaces an old one chosen by the {@link Eviction} policy.
+ * <p/>
+ * Not thread safe. An agent appends while holding its write lock, so batches
+ * should be drawn from the same thread, for example inside
+ * {@link RLAgent#train(ReplayBuffer.Batch)}.
+ * <p/>
+ * @author Team 2412.
+ */
+public class ReplayBuffer {
+
+	/**
+	 * Maximum number of transitions.
+	 */
+	private final int capacity;
+
+	/**
+	 * Number of state parameters.
+	 */
+	private final int states;
+
+	/**
+	 * Number of action parameters.
+	 */
+	private final int actions;
+
+	/**
+	 * States. Transition {@code i} starts at {@code i * states}.
+	 */
+	private final double[] state;
+
+	/**
+	 * Actions. Transition {@code i} starts at {@code i * actions}.
+	 */
+	private final double[] action;
+
+	/**
+	 * Resulting states. Transition {@code i} starts at {@code i * states}.
+	 */
+	private final double[] nextState;
+
+	/**
+	 * Rewards.
+	 */
+	private final double[] reward;
+
+	/**
+	 * Number of stored transitions.
+	 */
+	private int size = 0;
+
+	/**
+	 * Slot the oldest transition is in, which is the next to be replaced under
+	 * {@link Eviction#kOldest}.
+	 */
+	private int oldest = 0;
+
+	/**
+	 * Number of transitions ever appended.
+	 */
+	private long seen = 0;
+
+	/**
+	 * How to choose a transition to replace when full.
+	 */
+	private Eviction eviction = Eviction.kOldest;
+
+	/**
+	 * Random numbers for eviction.
+	 */
+	private final Random random;
+
+	/**
+	 * Create an empty buffer.
+	 * <p/>
+	 * @param capacity the maximum number of transitions.
+	 * @param states the number of state parameters.
+	 * @param actions the number of action parameters.
+	 * @param random random numbers for eviction.
+	 */
+	public ReplayBuffer(int capacity, int states, int actions, Random random) {
+		if (capacity <= 0) {
+			throw new Error("Capacity must be positive.");
+		}
+		this.capacity = capacity;
+		this.states = states;
+		this.actions = actions;
+		this.random = random;
+		this.state = new double[capacity * states];
+		this.action = new double[capacity * actions];
+		this.nextState = new double[capacity * states];
+		this.reward = new double[capacity];
+	}
+
+	/**
+	 * Set how to choose a transition to replace when full.
+	 * <p/>
+	 * @param eviction the new policy.
+	 */
+	public void setEviction(Eviction eviction) {
+		this.eviction = eviction;
+	}
+
+	/**
+	 * Store a transition. The values are copied.
+	 * <p/>
+	 * @param state the state the agent was in.
+	 * @param action the action performed.
+	 * @param nextState the resulting state.
+	 * @param reward the reward received.
+	 */
+	public void append(double[] state, double[] action, double[] nextState, double reward) {
+		seen++;
+		int slot;
+		if (size < capacity) {
+			slot = size++;
+		} else if (eviction == Eviction.kOldest) {
+			slot = oldest;
+			oldest = (oldest + 1) % capacity;
+		} else if (eviction == Eviction.kRandom) {
+			slot = random.nextInt(capacity);
+		} else { // reservoir
+			long index = (long) (random.nextDouble() * seen);
+			if (index >= capacity) {
+				return; // keep the old sample
+			}
+			slot = (int) index;
+		}
+		System.arraycopy(state, 0, this.state, slot * states, states);
+		System.arraycopy(action, 0, this.action, slot * actions, actions);
+		System.arraycopy(nextState, 0, this.nextState, slot * states, states);
+		this.reward[slot] = reward;
+	}
+
+	/**
+	 * Fill a batch with transitions drawn uniformly at random, with
+	 * replacement.
+	 * <p/>
+	 * @param batch the batch to fill. Its size is not changed.
+	 * @param random random numbers for sampling.
+	 */
+	public void sample(Batch batch, Random random) {
+		if (size == 0) {
+			throw new Error("No transitions.");
+		}
+		if (batch.states != states || batch.actions != actions) {
+			throw new Error("Batch has the wrong shape.");
+		}
+		for (int i = 0; i < batch.size; i++) {
+			int slot = random.nextInt(size);
+			System.arraycopy(state, slot * states, batch.state, i * states, states);
+			System.arraycopy(action, slot * actions, batch.action, i * actions, actions);
+			System.arraycopy(nextState, slot * states, batch.nextState, i * states, states);
+			batch.reward[i] = reward[slot];
+		}
+	}
+
+	/**
+	 * Remove every transition.
+	 */
+	public void clear() {
+		size = 0;
+		oldest = 0;
+		seen = 0;
+	}
+
+	/**
+	 * Number of stored transitions.
+	 * <p/>
+	 * @return the size.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Maximum number of transitions.
+	 * <p/>
+	 * @return the capacity.
+	 */
+	public int capacity() {
+		return capacity;
+	}
+
+	/**
+	 * Number of transitions ever appended, including those since replaced.
+	 * <p/>
+	 * @return the count.
+	 */
+	public long seen() {
+		return seen;
+	}
+
+	/**
+	 * A policy for choosing which transition to replace when full.
+	 */
+	public static class Eviction {
+		/**
+		 * Replace the oldest transition, so the buffer holds the most recent.
+		 */
+		public static final Eviction kOldest = new Eviction();
+
+		/**
+		 * Replace a random transition, so older experience fades gradually.
+		 */
+		public static final Eviction kRandom = new Eviction();
+
+		/**
+		 * Keep a uniform sample of every transition ever seen (reservoir
+		 * sampling), so early experience is not forgotten.
+		 */
+		public static final Eviction kReservoir = new Eviction();
+
+		/**
+		 * Create a policy.
+		 */
+		private Eviction() {
+		}
+	}
+
+	/**
+	 * A reusable minibatch of transitions, in the same flat layout as the
+	 * buffer.
+	 */
+	public static class Batch {
+		/**
+		 * Number of transitions.
+		 */
+		public final int size;
+
+		/**
+		 * Number of state parameters.
+		 */
+		public final int states;
+
+		/**
+		 * Number of action parameters.
+		 */
+		public final int actions;
+
+		/**
+		 * States. Transition {@code i} starts at {@code i * states}.
+		 */
+		public final double[] state;
+
+		/**
+		 * Actions. Transition {@code i} starts at {@code i * actions}.
+		 */
+		public final double[] action;
+
+		/**
+		 * Resulting states. Transition {@code i} starts at
+		 * {@code i * states}.
+		 */
+		public final double[] nextState;
+
+		/**
+		 * Rewards.
+		 */
+		public final double[] reward;
+
+		/**
+		 * Create an empty batch.
+		 * <p/>
+		 * @param size the number of transitions.
+		 * @param states the number of state parameters.
+		 * @param actions the number of action parameters.
+		 */
+		public Batch(int size, int states, int actions) {
+			this.size = size;
+			this.states = states;
+			this.actions = actions;
+			this.state = new double[size * states];
+			this.action = new double[size * actions];
+			this.nextState = new double[size * states];
+			this.reward = new double[size];
+		}
+	}
+}
@@ -0,0 +1,199 @@
+package com.shsrobotics.reinforcementlearning.rl;
+
+import java.util.Map;
+
+/**
+ * A Q-learning agent over a dense table, for mechanisms with only a few state
+ * and action parameters. Each range is divided into equal cells, Q-values
+ * live in one flat {@code double[]} indexed by state cell then action cell,
+ * and the best action cell of every state cell is kept up to date as values
+ * change. Requests and updates take constant time and the memory use is
+ * fixed when the agent is created.
+ * <p/>
+ * Chosen actions are cell centers. Action requests read the table without
+ * locking while a transition is recorded; a request racing an update may see
+ * the best action from just before it.
+ * <p/>
+ * @author Team 2412.
+ */
+public class TabularQLearner extends RLAgent {
+
+	/**
+	 * Cells along each state parameter.
+	 */
+	private final int stateResolution;
+
+	/**
+	 * Cells along each action parameter.
+	 */
+	private final int actionResolution;
+
+	/**
+	 * Number of action cells, over every action parameter.
+	 */
+	private final int actionCells;
+
+	/**
+	 * Q-values. The value of action cell {@code a} in state cell {@code s} is
+	 * at {@code s * actionCells + a}.
+	 */
+	private final double[] values;
+
+	/**
+	 * Best action cell of each state cell.
+	 */
+	private final int[] bestActions;
+
+	/**
+	 * Center of each action cell, action parameters one after another.
+	 */
+	private final double[] actionCenters;
+
+	/**
+	 * Fraction of the way each update moves a Q-value toward its target.
+	 */
+	private final double updateRate;
+
+	/**
+	 * Create a tabular Q-learning agent.
+	 * <p/>
+	 * @param actions see {@link #actionNames}
+	 * @param states see {@link #stateNames}
+	 * @param ranges see {@link RLAgent#RLAgent(String[], String[], Map, Map)}
+	 * @param options map of agent options. Accepts every {@link RLAgent}
+	 * option, and:
+	 *		<ul>
+	 *			<li>{@code "State Resolution"} -- cells along each state
+	 *				parameter. Defaults to 16.</li>
+	 *			<li>{@code "Action Resolution"} -- cells along each action
+	 *				parameter. Defaults to 16.</li>
+	 *			<li>{@code "Update Rate"} -- fraction of the way each update
+	 *				moves a Q-value toward its target. Defaults to 0.2.</li>
+	 *		</ul>
+	 */
+	public TabularQLearner(String[] actions, String[] states, Map<String, double[]> ranges, Map<String, Number> options) {
+		super(actions, states, ranges, options);
+
+		if (options.containsKey("State Resolution")) {
+			this.stateResolution = options.get("State Resolution").intValue();
+		} else {
+			this.stateResolution = 16; // default
+		}
+
+		if (options.containsKey("Action Resolution")) {
+			this.actionResolution = options.get("Action Resolution").intValue();
+		} else {
+			this.actionResolution = 16; // default
+		}
+
+		if (options.containsKey("Update Rate")) {
+			this.updateRate = options.get("Update Rate").doubleValue();
+		} else {
+			this.updateRate = 0.2; // default
+		}
+
+		double size = Math.pow(stateResolution, this.states) * Math.pow(actionResolution, this.actions);
+		if (size > Integer.MAX_VALUE - 8) {
+			throw new Error("Table too large.");
+		}
+		int stateCells = (int) Math.round(Math.pow(stateResolution, this.states));
+		this.actionCells = (int) Math.round(Math.pow(actionResolution, this.actions));
+		this.values = new double[stateCells * actionCells];
+		this.bestActions = new int[stateCells];
+
+		this.actionCenters = new double[actionCells * this.actions];
+		for (int cell = 0; cell < actionCells; cell++) {
+			int rest = cell;
+			for (int j = 0; j < this.actions; j++) {
+				double width = (maximumActionValues[j] - minimumActionValues[j]) / actionResolution;
+				actionCenters[cell * this.actions + j] = minimumActionValues[j] + (rest % actionResolution + 0.5) * width;
+				rest /= actionResolution;
+			}
+		}
+	}
+
+	/**
+	 * Get the Q-value of an action in a state.
+	 * <p/>
+	 * @param state the state.
+	 * @param action the action.
+	 * @return the Q-value of the cells they fall in.
+	 */
+	public double getValue(State state, Action action) {
+		return values[stateCell(state.get()) * actionCells + actionCell(action.get())];
+	}
+
+	@Override
+	protected double[] query(State state) {
+		int best = bestActions[stateCell(state.get())];
+		double[] actionValues = new double[actions];
+		System.arraycopy(actionCenters, best * actions, actionValues, 0, actions);
+		return actionValues;
+	}
+
+	@Override
+	protected boolean updateSupervisedLearner(State state, Action action, State newState, double reward) {
+		int from = stateCell(state.get());
+		int taken = actionCell(action.get());
+		int to = stateCell(newState.get());
+		double target = reward + discountFactor * values[to * actionCells + bestActions[to]];
+
+		int row = from * actionCells;
+		double value = values[row + taken] + updateRate * (target - values[row + taken]);
+		values[row + taken] = value;
+
+		// keep the best action current
+		int best = bestActions[from];
+		if (value > values[row + best]) {
+			bestActions[from] = taken;
+		} else if (taken == best) { // the best got worse; look again
+			for (int other = 0; other < actionCells; other++) {
+				if (values[row + other] > values[row + best]) {
+					best = other;
+				}
+			}
+			bestActions[from] = best;
+		}
+		return true;
+	}
+
+	/**
+	 * Find the cell of a state.
+	 * <p/>
+	 * @param stateValues the state values.
+	 * @return the state cell index.
+	 */
+	private int stateCell(double[] stateValues) {
+		return cell(stateValues, minimumStateValues, maximumStateValues, stateResolution);
+	}
+
+	/**
+	 * Find the cell of an action.
+	 * <p/>
+	 * @param actionValues the action values.
+	 * @return the action cell index.
+	 */
+	private int actionCell(double[] actionValues) {
+		return cell(actionValues, minimumActionValues, maximumActionValues, actionResolution);
+	}
+
+	/**
+	 * Find the cell of a point, with the first parameter varying fastest.
+	 * Points outside the ranges fall in the nearest edge cell.
+	 * <p/>
+	 * @param point the values.
+	 * @param minimums the minimum values.
+	 * @param maximums the maximum values.
+	 * @param resolution cells along each parameter.
+	 * @return the cell index.
+	 */
+	private static int cell(double[] point, double[] minimums, double[] maximums, int resolution) {
+		int index = 0;
+		for (int j = point.length - 1; j >= 0; j--) {
+			double range = maximums[j] - minimums[j];
+			int cell = (range > 0) ? (int) Math.floor((point[j] - minimums[j]) / range * resolution) : 0;
+			index = index * resolution + Math.max(0, Math.min(resolution - 1, cell));
+		}
+		return index;
+	}
+}
@@ -0,0 +1,103 @@
+package com.shsrobotics.reinforcementlearning.supervisedlearners;
+
+/**
+ * Squared Euclidean distances over rows of a contiguous input block. The loops
+ * are unrolled with independent accumulators so the JIT can keep several
+ * multiplies in flight, and the common low dimension counts have straight-line
+ * cases. Distances stay squared; callers take square roots of the final
+ * neighbors only, if at all.
+ * <p/>
+ * @author Team 2412.
+ */
+final class DistanceKernel {
+
+	/**
+	 * Not instantiable.
+	 */
+	private DistanceKernel() {
+	}
+
+	/**
+	 * Squared distance from a query to one row.
+	 * <p/>
+	 * @param query the query inputs.
+	 * @param inputs the input block.
+	 * @param offset where the row starts in {@code inputs}.
+	 * @param dimensions the number of input values per row.
+	 * @return the squared distance.
+	 */
+	static double squared(double[] query, double[] inputs, int offset, int dimensions) {
+		double sum0 = 0.0;
+		double sum1 = 0.0;
+		double sum2 = 0.0;
+		double sum3 = 0.0;
+		int j = 0;
+		for (; j + 3 < dimensions; j += 4) {
+			double d0 = query[j] - inputs[offset + j];
+			double d1 = query[j + 1] - inputs[offset + j + 1];
+			double d2 = query[j + 2] - inputs[offset + j + 2];
+			double d3 = query[j + 3] - inputs[offset + j + 3];
+			sum0 += d0 * d0;
+			sum1 += d1 * d1;
+			sum2 += d2 * d2;
+			sum3 += d3 * d3;
+		}
+		for (; j < dimensions; j++) {
+			double d = query[j] - inputs[offset + j];
+			sum0 += d * d;
+		}
+		return (sum0 + sum1) + (sum2 + sum3);
+	}
+
+	/**
+	 * Squared distances from a query to a run of rows.
+	 * <p/>
+	 * @param query the query inputs.
+	 * @param inputs the input block.
+	 * @param from the first row.
+	 * @param to one past the last row.
+	 * @param dimensions the number of input values per row.
+	 * @param out receives the distance to row {@code from + i} at index
+	 * {@code i}.
+	 */
+	static void squared(double[] query, double[] inputs, int from, int to, int dimensions, double[] out) {
+		int rows = to - from;
+		int offset = from * dimensions;
+		switch (dimensions) {
+			case 1: {
+				double q0 = query[0];
+				for (int i = 0; i < rows; i++) {
+					double d0 = q0 - inputs[offset + i];
+					out[i] = d0 * d0;
+				}
+				break;
+			}
+			case 2: {
+				double q0 = query[0];
+				double q1 = query[1];
+				for (int i = 0; i < rows; i++, offset += 2) {
+					double d0 = q0 - inputs[offset];
+					double d1 = q1 - inputs[offset + 1];
+					out[i] = d0 * d0 + d1 * d1;
+				}
+				break;
+			}
+			case 3: {
+				double q0 = query[0];
+				double q1 = query[1];
+				double q2 = query[2];
+				for (int i = 0; i < rows; i++, offset += 3) {
+					double d0 = q0 - inputs[offset];
+					double d1 = q1 - inputs[offset + 1];
+					double d2 = q2 - inputs[offset + 2];
+					out[i] = d0 * d0 + d1 * d1 + d2 * d2;
+				}
+				break;
+			}
+			default:
+				for (int i = 0; i < rows; i++, offset += dimensions) {
+					out[i] = squared(query, inputs, offset, dimensions);
+				}
+		}
+	}
+}
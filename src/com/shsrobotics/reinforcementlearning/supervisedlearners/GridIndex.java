@@ -0,0 +1,310 @@
+package com.shsrobotics.reinforcementlearning.supervisedlearners;
+
+import com.shsrobotics.reinforcementlearning.util.DataTable;
+import java.util.Arrays;
+
+/**
+ * Approximate nearest neighbor index over the inputs of a data table. The
+ * input ranges are divided into a uniform grid, and each row is hashed into a
+ * bucket by its grid cell. A query only looks at the cells within a fixed
+ * radius of its own cell, so it may miss neighbors that lie just outside. A
+ * larger radius or coarser grid finds more true neighbors at the cost of
+ * looking at more points.
+ * <p/>
+ * One writer thread inserts while any number of readers search without
+ * locking. Rows must be inserted before the table publishes them.
+ * <p/>
+ * @author Team 2412.
+ */
+public class GridIndex {
+
+	/**
+	 * Largest number of hash buckets.
+	 */
+	private static final int maximumBuckets = 1 << 18;
+
+	/**
+	 * The indexed points.
+	 */
+	private final DataTable points;
+
+	/**
+	 * How many input variables.
+	 */
+	private final int dimensions;
+
+	/**
+	 * Minimum value of each input variable.
+	 */
+	private final double[] minimums;
+
+	/**
+	 * Cells per unit of each input variable.
+	 */
+	private final double[] scales;
+
+	/**
+	 * Cells along each input variable.
+	 */
+	private final int cells;
+
+	/**
+	 * How many cells away from the query cell to search.
+	 */
+	private final int radius;
+
+	/**
+	 * First row of each bucket, or -1.
+	 */
+	private final int[] head;
+
+	/**
+	 * Last row of each bucket, or -1.
+	 */
+	private final int[] tail;
+
+	/**
+	 * Next row in the same bucket, or -1. Rows are chained in insertion order,
+	 * so a reader can stop at the first row it should not see yet.
+	 */
+	private volatile int[] next = new int[16];
+
+	/**
+	 * Cell key of each row.
+	 */
+	private volatile long[] keys = new long[16];
+
+	/**
+	 * Number of indexed points.
+	 */
+	private int size = 0;
+
+	/**
+	 * Search buffers for each thread, so queries do not allocate.
+	 */
+	private final ThreadLocal<Search> searches = new ThreadLocal<Search>() {
+		@Override
+		protected Search initialValue() {
+			return new Search();
+		}
+	};
+
+	/**
+	 * Create an empty index.
+	 * <p/>
+	 * @param points the points to index.
+	 * @param minimums minimum input values.
+	 * @param maximums maximum input values.
+	 * @param cells how many cells to divide each input range into.
+	 * @param radius how many cells away from the query cell to search.
+	 */
+	public GridIndex(DataTable points, double[] minimums, double[] maximums, int cells, int radius) {
+		this.points = points;
+		this.dimensions = points.inputWidth();
+		this.minimums = minimums;
+		this.cells = cells;
+		this.radius = radius;
+		this.scales = new double[dimensions];
+		for (int j = 0; j < dimensions; j++) {
+			double range = maximums[j] - minimums[j];
+			scales[j] = (range > 0) ? cells / range : 0.0;
+		}
+
+		int buckets = 1;
+		double totalCells = Math.pow(cells, dimensions);
+		while (buckets < totalCells && buckets < maximumBuckets) {
+			buckets <<= 1;
+		}
+		head = new int[buckets];
+		tail = new int[buckets];
+		Arrays.fill(head, -1);
+		Arrays.fill(tail, -1);
+	}
+
+	/**
+	 * Index the next row of the table. Rows must be inserted in order.
+	 * <p/>
+	 * @param index the row index of the point.
+	 */
+	public void insert(int index) {
+		if (index != size) {
+			throw new Error("Points must be inserted in order.");
+		}
+		if (index == next.length) {
+			next = Arrays.copyOf(next, 2 * index);
+			keys = Arrays.copyOf(keys, 2 * index);
+		}
+		long key = 1;
+		double[] inputs = points.inputs();
+		for (int j = 0; j < dimensions; j++) {
+			key = hash(key, cell(inputs[index * dimensions + j], j));
+		}
+		int bucket = bucket(key);
+		keys[index] = key;
+		next[index] = -1;
+		if (tail[bucket] == -1) {
+			head[bucket] = index;
+		} else {
+			next[tail[bucket]] = index;
+		}
+		tail[bucket] = index;
+		size++;
+	}
+
+	/**
+	 * Find approximate nearest neighbors of a query. If the search radius
+	 * holds too few points, it is widened until it does, or until searching it
+	 * would cost more than checking every point.
+	 * <p/>
+	 * @param query the query inputs.
+	 * @param limit only points in rows below this are considered. Readers
+	 * pass the table size they read before calling.
+	 * @param neighbors the heap to fill with row indices, keyed by squared
+	 * distance.
+	 * @return true if the heap was filled, false if every point should be
+	 * checked instead.
+	 */
+	public boolean nearest(double[] query, int limit, NeighborHeap neighbors) {
+		Search search = searches.get();
+		int[] center = search.center;
+		int[] low = search.low;
+		int[] high = search.high;
+		for (int j = 0; j < dimensions; j++) {
+			center[j] = cell(query[j], j);
+		}
+
+		neighbors.clear();
+		for (int r = radius; r < cells && Math.pow(2 * r + 1, dimensions) <= limit; r++) {
+			if (r == radius) {
+				for (int j = 0; j < dimensions; j++) {
+					low[j] = Math.max(0, center[j] - r);
+					high[j] = Math.min(cells - 1, center[j] + r);
+				}
+				scan(query, limit, search, neighbors);
+			} else {
+				// only the new outer shell; the heap already holds the best of the inner cells
+				for (int d = 0; d < dimensions; d++) {
+					for (int j = 0; j < dimensions; j++) {
+						int reach = (j < d) ? r - 1 : r; // faces of earlier variables covered these
+						low[j] = Math.max(0, center[j] - reach);
+						high[j] = Math.min(cells - 1, center[j] + reach);
+					}
+					if (center[d] - r >= 0) {
+						low[d] = high[d] = center[d] - r;
+						scan(query, limit, search, neighbors);
+					}
+					if (center[d] + r < cells) {
+						low[d] = high[d] = center[d] + r;
+						scan(query, limit, search, neighbors);
+					}
+				}
+			}
+			if (neighbors.isFull()) {
+				return true;
+			}
+		}
+		neighbors.clear();
+		return false;
+	}
+
+	/**
+	 * Offer every point in a box of cells to the heap.
+	 * <p/>
+	 * @param query the query inputs.
+	 * @param limit only points in rows below this are considered.
+	 * @param search the box to scan, from {@code search.low} to
+	 * {@code search.high} inclusive.
+	 * @param neighbors the heap to offer row indices to, keyed by squared
+	 * distance.
+	 */
+	private void scan(double[] query, int limit, Search search, NeighborHeap neighbors) {
+		int[] low = search.low;
+		int[] high = search.high;
+		int[] cell = search.cell;
+		double[] inputs = points.inputs();
+		int[] next = this.next; // holds every row below the limit
+		long[] keys = this.keys;
+
+		System.arraycopy(low, 0, cell, 0, dimensions);
+		while (true) {
+			long key = 1;
+			for (int j = 0; j < dimensions; j++) {
+				key = hash(key, cell[j]);
+			}
+			for (int row = head[bucket(key)]; row != -1 && row < limit; row = next[row]) {
+				if (keys[row] != key) {
+					continue; // another cell in the same bucket
+				}
+				neighbors.offer(DistanceKernel.squared(query, inputs, row * dimensions, dimensions), row);
+			}
+
+			// next cell
+			int j = 0;
+			while (j < dimensions && cell[j] == high[j]) {
+				cell[j] = low[j];
+				j++;
+			}
+			if (j == dimensions) {
+				return;
+			}
+			cell[j]++;
+		}
+	}
+
+	/**
+	 * Find the grid cell of a value.
+	 * <p/>
+	 * @param value the input value.
+	 * @param j the input variable.
+	 * @return the cell along that variable.
+	 */
+	private int cell(double value, int j) {
+		int cell = (int) Math.floor((value - minimums[j]) * scales[j]);
+		return Math.max(0, Math.min(cells - 1, cell));
+	}
+
+	/**
+	 * Mix one value, such as a cell coordinate, into a key. Also used by
+	 * {@link KNNLearner} to group points while condensing.
+	 * <p/>
+	 * @param key the key so far.
+	 * @param value the value to mix in.
+	 * @return the new key.
+	 */
+	static long hash(long key, long value) {
+		key = (key + value) * 0x9E3779B97F4A7C15L;
+		return key ^ (key >>> 29);
+	}
+
+	/**
+	 * Find the bucket of a cell key.
+	 * <p/>
+	 * @param key the cell key.
+	 * @return the bucket.
+	 */
+	private int bucket(long key) {
+		return (int) (key ^ (key >>> 32)) & (head.length - 1);
+	}
+
+	/**
+	 * Cell coordinates used during one search.
+	 */
+	private class Search {
+		/**
+		 * Cell of the query.
+		 */
+		final int[] center = new int[dimensions];
+		/**
+		 * Lowest cell of the box being scanned.
+		 */
+		final int[] low = new int[dimensions];
+		/**
+		 * Highest cell of the box being scanned.
+		 */
+		final int[] high = new int[dimensions];
+		/**
+		 * Cell being scanned.
+		 */
+		final int[] cell = new int[dimensions];
+	}
+}
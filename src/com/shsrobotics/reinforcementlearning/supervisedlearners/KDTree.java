@@ -0,0 +1,464 @@
+package com.shsrobotics.reinforcementlearning.supervisedlearners;
+
+import com.shsrobotics.reinforcementlearning.util.DataTable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * K-dimensional tree over the inputs of a data table. Points are referenced by
+ * their row index, and are inserted one at a time as the table grows. Subtrees
+ * that become too unbalanced are rebuilt around their median (scapegoat
+ * rebuilding), so inserts and queries stay logarithmic even for correlated
+ * data such as robot logs.
+ * <p/>
+ * One writer thread inserts while any number of readers search without
+ * locking. A node never changes once it is linked into the tree, except to
+ * gain a child. A rebuilt subtree is made of new nodes and swapped in with a
+ * single link write, so a reader sees either the old subtree or the new one.
+ * Rows must be inserted before the table publishes them.
+ * <p/>
+ * @author Team 2412.
+ */
+public class KDTree {
+
+	/**
+	 * Balance factor. A subtree is rebuilt when one child holds more than this
+	 * fraction of its points.
+	 */
+	private static final double alpha = 0.7;
+
+	/**
+	 * The indexed points.
+	 */
+	private final DataTable points;
+
+	/**
+	 * How many input variables.
+	 */
+	private final int dimensions;
+
+	/**
+	 * Node storage. Node 0 is a sentinel whose left child is the root.
+	 */
+	private volatile Nodes nodes = new Nodes(16);
+
+	/**
+	 * Search path of the last insert.
+	 */
+	private int[] path = new int[16];
+
+	/**
+	 * Number of indexed points.
+	 */
+	private int size = 0;
+
+	/**
+	 * Create an empty tree.
+	 * <p/>
+	 * @param points the points to index.
+	 */
+	public KDTree(DataTable points) {
+		this.points = points;
+		this.dimensions = points.inputWidth();
+	}
+
+	/**
+	 * Number of indexed points.
+	 * <p/>
+	 * @return the size.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Index the next row of the table. Rows must be inserted in order.
+	 * <p/>
+	 * @param index the row index of the point.
+	 */
+	public void insert(int index) {
+		if (index != size) {
+			throw new Error("Points must be inserted in order.");
+		}
+		double[] inputs = points.inputs();
+		int offset = index * dimensions;
+		ensureCapacity(1);
+		Nodes nodes = this.nodes;
+
+		int depth = 0;
+		int node = 0; // sentinel
+		int side = 0; // the root hangs off the left of the sentinel
+		while (true) {
+			if (depth == path.length) {
+				path = Arrays.copyOf(path, 2 * depth);
+			}
+			path[depth++] = node;
+			nodes.count[node]++;
+			int child = nodes.links.get(2 * node + side);
+			if (child == -1) {
+				break;
+			}
+			node = child;
+			int a = nodes.axis[node];
+			side = (inputs[offset + a] < nodes.split[node]) ? 0 : 1;
+		}
+		int a = (node == 0) ? 0 : (nodes.axis[node] + 1) % dimensions;
+		int leaf = nodes.add(index, a, inputs[offset + a]);
+		nodes.links.set(2 * node + side, leaf); // publish
+		size++;
+
+		if (depth - 1 > Math.log(size) / Math.log(1 / alpha)) {
+			// walk up from the new leaf and rebuild the first, lowest, unbalanced ancestor
+			int child = leaf;
+			for (int i = depth - 1; i >= 1; i--) {
+				int parent = path[i];
+				if (nodes.count[child] > alpha * nodes.count[parent]) {
+					int above = path[i - 1];
+					int link = (nodes.links.get(2 * above) == parent) ? 2 * above : 2 * above + 1;
+					ensureCapacity(nodes.count[parent]);
+					nodes = this.nodes;
+					nodes.links.set(link, rebuild(nodes, parent)); // swap in
+					break;
+				}
+				child = parent;
+			}
+		}
+		if (nodes.used > 3 * size + 16) {
+			compact();
+		}
+	}
+
+	/**
+	 * Find the nearest indexed points to a query.
+	 * <p/>
+	 * @param query the query inputs.
+	 * @param limit only points in rows below this are considered. Readers
+	 * pass the table size they read before calling.
+	 * @param neighbors the heap to fill with row indices, keyed by squared
+	 * distance.
+	 */
+	public void nearest(double[] query, int limit, NeighborHeap neighbors) {
+		Nodes nodes = this.nodes;
+		search(nodes, nodes.links.get(0), points.inputs(), query, limit, neighbors);
+	}
+
+	/**
+	 * Recursive nearest neighbor search.
+	 * <p/>
+	 * @param nodes the node storage.
+	 * @param node the subtree to search.
+	 * @param inputs the input block of the table.
+	 * @param query the query inputs.
+	 * @param limit only points in rows below this are considered.
+	 * @param neighbors the best neighbors so far.
+	 */
+	private void search(Nodes nodes, int node, double[] inputs, double[] query, int limit, NeighborHeap neighbors) {
+		if (node == -1) {
+			return;
+		}
+		int row = nodes.row[node];
+		if (row < limit) {
+			neighbors.offer(DistanceKernel.squared(query, inputs, row * dimensions, dimensions), row);
+		}
+
+		double difference = query[nodes.axis[node]] - nodes.split[node];
+		int near = nodes.links.get(2 * node + ((difference < 0) ? 0 : 1));
+		int far = nodes.links.get(2 * node + ((difference < 0) ? 1 : 0));
+		search(nodes, near, inputs, query, limit, neighbors);
+		if (!neighbors.isFull() || difference * difference <= neighbors.worst()) { // ties may still win on index
+			search(nodes, far, inputs, query, limit, neighbors);
+		}
+	}
+
+	/**
+	 * Build a balanced copy of a subtree from new nodes.
+	 * <p/>
+	 * @param nodes the node storage, with room for the copy.
+	 * @param node the root of the subtree.
+	 * @return the root of the copy.
+	 */
+	private int rebuild(Nodes nodes, int node) {
+		int[] rows = new int[nodes.count[node]];
+		collect(nodes, node, rows, 0);
+		return build(nodes, rows, 0, rows.length);
+	}
+
+	/**
+	 * Number of bytes {@link #write(ByteBuffer)} writes.
+	 * <p/>
+	 * @return the byte count.
+	 */
+	long bytes() {
+		return 4 + 28L * nodes.used;
+	}
+
+	/**
+	 * Write the tree's nodes, so it can be read back without rebuilding.
+	 * <p/>
+	 * @param out the buffer to write to.
+	 */
+	void write(ByteBuffer out) {
+		Nodes nodes = this.nodes;
+		int used = nodes.used;
+		out.putInt(used);
+		out.asIntBuffer().put(nodes.row, 0, used);
+		out.position(out.position() + 4 * used);
+		out.asIntBuffer().put(nodes.axis, 0, used);
+		out.position(out.position() + 4 * used);
+		out.asDoubleBuffer().put(nodes.split, 0, used);
+		out.position(out.position() + 8 * used);
+		out.asIntBuffer().put(nodes.count, 0, used);
+		out.position(out.position() + 4 * used);
+		for (int i = 0; i < 2 * used; i++) {
+			out.putInt(nodes.links.get(i));
+		}
+	}
+
+	/**
+	 * Read a tree written by {@link #write(ByteBuffer)}.
+	 * <p/>
+	 * @param points the indexed points, as they were when written.
+	 * @param in the buffer to read from.
+	 * @return the tree.
+	 */
+	static KDTree read(DataTable points, ByteBuffer in) {
+		KDTree tree = new KDTree(points);
+		int used = in.getInt();
+		Nodes nodes = new Nodes(Math.max(used, 16));
+		in.asIntBuffer().get(nodes.row, 0, used);
+		in.position(in.position() + 4 * used);
+		in.asIntBuffer().get(nodes.axis, 0, used);
+		in.position(in.position() + 4 * used);
+		in.asDoubleBuffer().get(nodes.split, 0, used);
+		in.position(in.position() + 8 * used);
+		in.asIntBuffer().get(nodes.count, 0, used);
+		in.position(in.position() + 4 * used);
+		for (int i = 0; i < 2 * used; i++) {
+			nodes.links.set(i, in.getInt());
+		}
+		nodes.used = used;
+		if (nodes.count[0] != points.size()) {
+			throw new Error("Index does not match the data.");
+		}
+		tree.nodes = nodes;
+		tree.size = points.size();
+		return tree;
+	}
+
+	/**
+	 * Rebuild the whole tree into new storage, dropping nodes left behind by
+	 * earlier rebuilds.
+	 */
+	void compact() {
+		Nodes nodes = this.nodes;
+		if (nodes.used == size + 1) {
+			return; // nothing left behind
+		}
+		int[] rows = new int[size];
+		collect(nodes, nodes.links.get(0), rows, 0);
+		Nodes compacted = new Nodes(2 * size + 16);
+		compacted.count[0] = size;
+		compacted.links.set(0, build(compacted, rows, 0, size));
+		this.nodes = compacted; // publish
+	}
+
+	/**
+	 * Gather the rows of a subtree.
+	 * <p/>
+	 * @param nodes the node storage.
+	 * @param node the root of the subtree.
+	 * @param rows the array to fill.
+	 * @param position where to start filling.
+	 * @return the next position to fill.
+	 */
+	private int collect(Nodes nodes, int node, int[] rows, int position) {
+		if (node == -1) {
+			return position;
+		}
+		rows[position++] = nodes.row[node];
+		position = collect(nodes, nodes.links.get(2 * node), rows, position);
+		return collect(nodes, nodes.links.get(2 * node + 1), rows, position);
+	}
+
+	/**
+	 * Build a balanced subtree from new nodes, splitting on the variable with
+	 * the widest spread at each level.
+	 * <p/>
+	 * @param nodes the node storage, with room for the subtree.
+	 * @param rows the rows to arrange. Reordered in place.
+	 * @param from first row, inclusive.
+	 * @param to last row, exclusive.
+	 * @return the root of the subtree, or -1 if empty.
+	 */
+	private int build(Nodes nodes, int[] rows, int from, int to) {
+		if (from >= to) {
+			return -1;
+		}
+		double[] inputs = points.inputs();
+		int widest = 0;
+		double widestSpread = -1.0;
+		for (int j = 0; j < dimensions; j++) {
+			double minimum = Double.POSITIVE_INFINITY;
+			double maximum = Double.NEGATIVE_INFINITY;
+			for (int i = from; i < to; i++) {
+				double value = inputs[rows[i] * dimensions + j];
+				minimum = Math.min(minimum, value);
+				maximum = Math.max(maximum, value);
+			}
+			if (maximum - minimum > widestSpread) {
+				widestSpread = maximum - minimum;
+				widest = j;
+			}
+		}
+
+		int middle = (from + to) >>> 1;
+		select(inputs, rows, from, to, middle, widest);
+		int row = rows[middle];
+		int node = nodes.add(row, widest, inputs[row * dimensions + widest]);
+		nodes.links.set(2 * node, build(nodes, rows, from, middle));
+		nodes.links.set(2 * node + 1, build(nodes, rows, middle + 1, to));
+		nodes.count[node] = to - from;
+		return node;
+	}
+
+	/**
+	 * Partially sort rows so the median ends up in the middle, with smaller
+	 * values before it and larger values after it (quickselect).
+	 * <p/>
+	 * @param inputs the input block of the table.
+	 * @param rows the rows to arrange.
+	 * @param from first row, inclusive.
+	 * @param to last row, exclusive.
+	 * @param target the position to fill with the correct row.
+	 * @param a the variable to compare.
+	 */
+	private void select(double[] inputs, int[] rows, int from, int to, int target, int a) {
+		int low = from;
+		int high = to - 1;
+		while (low < high) {
+			double pivot = inputs[rows[(low + high) >>> 1] * dimensions + a];
+			int i = low;
+			int j = high;
+			while (i <= j) {
+				while (inputs[rows[i] * dimensions + a] < pivot) {
+					i++;
+				}
+				while (inputs[rows[j] * dimensions + a] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					int swap = rows[i];
+					rows[i++] = rows[j];
+					rows[j--] = swap;
+				}
+			}
+			if (target <= j) {
+				high = j;
+			} else if (target >= i) {
+				low = i;
+			} else {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * Make room for more nodes, publishing larger storage if needed.
+	 * <p/>
+	 * @param extra the number of nodes to make room for.
+	 */
+	private void ensureCapacity(int extra) {
+		Nodes nodes = this.nodes;
+		if (nodes.used + extra > nodes.row.length) {
+			this.nodes = nodes.copy(Math.max(nodes.used + extra, 2 * nodes.row.length));
+		}
+	}
+
+	/**
+	 * Node storage. Fields of a node are written before it is linked, and
+	 * links are read and written atomically, so a reader that follows a link
+	 * sees the whole node.
+	 */
+	private static class Nodes {
+		/**
+		 * Table row of each node.
+		 */
+		final int[] row;
+		/**
+		 * Input variable each node splits on.
+		 */
+		final int[] axis;
+		/**
+		 * Value each node splits at.
+		 */
+		final double[] split;
+		/**
+		 * Number of nodes in the subtree rooted at each node. Only used by
+		 * the writer.
+		 */
+		final int[] count;
+		/**
+		 * Children of each node, or -1. The left child of node {@code i} is
+		 * at {@code 2 * i} and the right child at {@code 2 * i + 1}.
+		 */
+		final AtomicIntegerArray links;
+		/**
+		 * Number of nodes in use, including the sentinel.
+		 */
+		int used = 1;
+
+		/**
+		 * Create storage holding only the sentinel.
+		 * <p/>
+		 * @param capacity the maximum number of nodes.
+		 */
+		Nodes(int capacity) {
+			row = new int[capacity];
+			axis = new int[capacity];
+			split = new double[capacity];
+			count = new int[capacity];
+			links = new AtomicIntegerArray(2 * capacity);
+			links.set(0, -1);
+			links.set(1, -1);
+		}
+
+		/**
+		 * Add an unlinked leaf node.
+		 * <p/>
+		 * @param row the table row.
+		 * @param axis the input variable to split on.
+		 * @param split the value to split at.
+		 * @return the node.
+		 */
+		int add(int row, int axis, double split) {
+			int node = used++;
+			this.row[node] = row;
+			this.axis[node] = axis;
+			this.split[node] = split;
+			this.count[node] = 1;
+			links.set(2 * node, -1);
+			links.set(2 * node + 1, -1);
+			return node;
+		}
+
+		/**
+		 * Copy into larger storage.
+		 * <p/>
+		 * @param capacity the maximum number of nodes.
+		 * @return the copy.
+		 */
+		Nodes copy(int capacity) {
+			Nodes copy = new Nodes(capacity);
+			System.arraycopy(row, 0, copy.row, 0, used);
+			System.arraycopy(axis, 0, copy.axis, 0, used);
+			System.arraycopy(split, 0, copy.split, 0, used);
+			System.arraycopy(count, 0, copy.count, 0, used);
+			for (int i = 0; i < 2 * used; i++) {
+				copy.links.set(i, links.get(i));
+			}
+			copy.used = used;
+			return copy;
+		}
+	}
+}
@@ -1,23 +1,121 @@
 package com.shsrobotics.reinforcementlearning.supervisedlearners;
 
+import com.shsrobotics.reinforcementlearning.util.DataBatch;
 import com.shsrobotics.reinforcementlearning.util.DataPoint;
-import java.util.ArrayList;
+import com.shsrobotics.reinforcementlearning.util.DataTable;
+import com.shsrobotics.reinforcementlearning.util.Metrics;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Regression K-Nearest-Neighbor algorithm.
+ * <p/>
+ * One thread may call {@link #update(DataPoint)} while others query. Queries
+ * do not lock; each one sees the data as of when it started. Changing the
+ * index or condensation settings must be done from the updating thread.
  */
 public class KNNLearner extends SupervisedLearner {
 
 	/**
 	 * The {@link #k} nearest neighbors to base the decision off of.
 	 */
-	private int k;
+	private volatile int k;
 
 	/**
 	 * How many input variables.
 	 */
 	private int dimensions;
 
+	/**
+	 * Number of data points compared against a block of queries at a time.
+	 */
+	private static final int scanTile = 512;
+
+	/**
+	 * First bytes of a snapshot file, "KNNS".
+	 */
+	private static final int snapshotMagic = 0x4B4E4E53;
+
+	/**
+	 * Snapshot format version written by {@link #save(File)}.
+	 */
+	private static final int snapshotVersion = 1;
+
+	/**
+	 * Latency of single queries.
+	 */
+	private static final Metrics.Histogram queryLatency = Metrics.getDefault().histogram("KNN Query");
+
+	/**
+	 * Latency of whole batch queries.
+	 */
+	private static final Metrics.Histogram batchLatency = Metrics.getDefault().histogram("KNN Batch Query");
+
+	/**
+	 * Finest grid tried when merging points, in cells per input range.
+	 */
+	private static final int finestMerge = 1024;
+
+	/**
+	 * The data and its indexes.
+	 */
+	private volatile Snapshot snapshot;
+
+	/**
+	 * Cells per input range of the approximate index, or 0 if queries are
+	 * exact.
+	 */
+	private int gridCells = 0;
+
+	/**
+	 * Search radius of the approximate index.
+	 */
+	private int gridRadius = 0;
+
+	/**
+	 * Most data points to hold, or 0 to keep every point.
+	 */
+	private int maximumPoints = 0;
+
+	/**
+	 * How far a prediction may be from a point's output for the point to be
+	 * left out.
+	 */
+	private double tolerance = 0.0;
+
+	/**
+	 * Number of points passed to {@link #update(DataPoint)} while condensing.
+	 */
+	private volatile long pointsSeen = 0;
+
+	/**
+	 * Number of those points left out because they were already predicted
+	 * within the tolerance.
+	 */
+	private volatile long pointsDropped = 0;
+
+	/**
+	 * Total absolute error of predictions of those points, made before each
+	 * was added.
+	 */
+	private volatile double totalError = 0.0;
+
+	/**
+	 * Largest difference between a merged point's output and the average it
+	 * was replaced by, over all condensations.
+	 */
+	private volatile double mergeError = 0.0;
+
 	/**
 	 * Create a KNN Learner.
 	 * <p/>
@@ -27,104 +125,824 @@ public class KNNLearner extends SupervisedLearner {
 	public KNNLearner(double[] minimums, double[] maximums) {
 		super(minimums, maximums);
 		this.dimensions = minimums.length;
-		this.k = (int) Math.floor(Math.sqrt(this.data.size()));
+		this.k = (int) Math.floor(Math.sqrt(this.table.size()));
 		if (k < 3) {
 			k = 3;
 		}
+		this.snapshot = new Snapshot(table, null, null);
 	}
 
 	/**
 	 * The new k nearest neighbors to use.
 	 * <p/>
-	 * @param k the new k
+	 * @param k the new k. At least 1.
 	 */
 	public void setK(int k) {
+		if (k < 1) {
+			throw new Error("k must be at least 1.");
+		}
 		this.k = k;
 	}
 
+	/**
+	 * Whether to answer queries from a KD-tree index instead of scanning every
+	 * data point. The index is built from the current data and kept up to date
+	 * by {@link #update(DataPoint)}.
+	 * <p/>
+	 * @param indexed true to use the index.
+	 */
+	public void setIndexed(boolean indexed) {
+		Snapshot snapshot = this.snapshot;
+		if (!indexed) {
+			this.snapshot = new Snapshot(snapshot.table, null, snapshot.grid);
+		} else if (snapshot.index == null) {
+			this.snapshot = new Snapshot(snapshot.table, newIndex(snapshot.table), snapshot.grid);
+		}
+	}
+
+	/**
+	 * Answer queries approximately from a grid over the input ranges, for
+	 * when latency matters more than an exact answer. Only points in grid
+	 * cells near the query are considered. More cells or a smaller radius
+	 * means fewer points to check but more true neighbors missed; use
+	 * {@link #measureRecall(double[][])} to see how many are found.
+	 * <p/>
+	 * @param cells how many cells to divide each input range into, or 0 to
+	 * turn approximate queries off.
+	 * @param radius how many cells away from the query cell to search.
+	 */
+	public void setApproximate(int cells, int radius) {
+		Snapshot snapshot = this.snapshot;
+		gridCells = Math.max(cells, 0);
+		gridRadius = radius;
+		this.snapshot = new Snapshot(snapshot.table, snapshot.index, newGrid(snapshot.table));
+	}
+
+	/**
+	 * Hold at most a fixed number of representative points, so memory and
+	 * query time stop growing. A new point is left out if the learner already
+	 * predicts its output within the tolerance. When the limit is reached,
+	 * nearby points with outputs within the tolerance of each other are merged
+	 * into their average, from a fine grid to a coarse one, until a quarter of
+	 * the limit is free.
+	 * <p/>
+	 * @param maximumPoints the most points to hold, or 0 to keep every point.
+	 * @param tolerance how far a prediction may be from a point's output.
+	 */
+	public void setCondensation(int maximumPoints, double tolerance) {
+		this.maximumPoints = Math.max(maximumPoints, 0);
+		this.tolerance = tolerance;
+		if (this.maximumPoints > 0 && snapshot.table.size() > this.maximumPoints) {
+			condense();
+		}
+	}
+
+	/**
+	 * Number of data points held.
+	 * <p/>
+	 * @return the size.
+	 */
+	public int size() {
+		return snapshot.table.size();
+	}
+
+	/**
+	 * Number of points passed to {@link #update(DataPoint)} while condensing.
+	 * <p/>
+	 * @return the count.
+	 */
+	public long getPointsSeen() {
+		return pointsSeen;
+	}
+
+	/**
+	 * Number of points left out because they were already predicted within
+	 * the tolerance.
+	 * <p/>
+	 * @return the count.
+	 */
+	public long getPointsDropped() {
+		return pointsDropped;
+	}
+
+	/**
+	 * Mean absolute error of predictions of points passed to
+	 * {@link #update(DataPoint)} while condensing, each made before the point
+	 * was added.
+	 * <p/>
+	 * @return the mean error, or 0 if no points were seen.
+	 */
+	public double getCondensationError() {
+		long seen = pointsSeen;
+		return (seen == 0) ? 0.0 : totalError / seen;
+	}
+
+	/**
+	 * Largest difference between the output of a merged point and the average
+	 * it was replaced by.
+	 * <p/>
+	 * @return the error.
+	 */
+	public double getMergeError() {
+		return mergeError;
+	}
+
+	/**
+	 * Save the learner to a binary snapshot: the settings, the input ranges,
+	 * every data point and the KD-tree index if there is one, so that
+	 * {@link #load(File)} does not have to rebuild it. Values are stored
+	 * little-endian in flat blocks, as they are held in memory. Must be called
+	 * from the updating thread.
+	 * <p/>
+	 * @param file the file to write.
+	 * @throws IOException if the file cannot be written.
+	 */
+	public void save(File file) throws IOException {
+		Snapshot snapshot = this.snapshot;
+		DataTable table = snapshot.table;
+		int rows = table.size();
+		int outputs = Math.max(table.outputWidth(), 0);
+		byte[][] inputKeys = encode(table.getInputKeys());
+		byte[][] outputKeys = encode(table.getOutputKeys());
+		if (snapshot.index != null) {
+			snapshot.index.compact();
+		}
+
+		long bytes = 10 * 4 + 8 + 16L * dimensions
+			+ keyBytes(inputKeys) + keyBytes(outputKeys)
+			+ 8L * rows * (dimensions + outputs)
+			+ ((snapshot.index != null) ? snapshot.index.bytes() : 0);
+		if (bytes > Integer.MAX_VALUE) {
+			throw new Error("Too much data for one snapshot.");
+		}
+		try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+			out.setLength(bytes);
+			MappedByteBuffer buffer = out.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(snapshotMagic);
+			buffer.putInt(snapshotVersion);
+			buffer.putInt(dimensions);
+			buffer.putInt(outputs);
+			buffer.putInt(rows);
+			buffer.putInt(k);
+			buffer.putInt((snapshot.index != null) ? 1 : 0);
+			buffer.putInt(gridCells);
+			buffer.putInt(gridRadius);
+			buffer.putInt(maximumPoints);
+			buffer.putDouble(tolerance);
+			for (int j = 0; j < dimensions; j++) {
+				buffer.putDouble(minimums[j]);
+			}
+			for (int j = 0; j < dimensions; j++) {
+				buffer.putDouble(maximums[j]);
+			}
+			putKeys(buffer, inputKeys);
+			putKeys(buffer, outputKeys);
+			buffer.asDoubleBuffer().put(table.inputs(), 0, rows * dimensions);
+			buffer.position(buffer.position() + 8 * rows * dimensions);
+			buffer.asDoubleBuffer().put(table.outputs(), 0, rows * outputs);
+			buffer.position(buffer.position() + 8 * rows * outputs);
+			if (snapshot.index != null) {
+				snapshot.index.write(buffer);
+			}
+			buffer.force();
+		}
+	}
+
+	/**
+	 * Load a learner from a snapshot written by {@link #save(File)}. The file
+	 * is memory-mapped and its blocks are copied straight into the learner's
+	 * tables, so nothing is parsed or rebuilt except the approximate index.
+	 * <p/>
+	 * @param file the file to read.
+	 * @return the learner.
+	 * @throws IOException if the file cannot be read.
+	 */
+	public static KNNLearner load(File file) throws IOException {
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			FileChannel channel = in.getChannel();
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			buffer.order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.getInt() != snapshotMagic) {
+				throw new Error("Not a learner snapshot.");
+			}
+			if (buffer.getInt() != snapshotVersion) {
+				throw new Error("Unsupported snapshot version.");
+			}
+			int dimensions = buffer.getInt();
+			int outputs = buffer.getInt();
+			int rows = buffer.getInt();
+			int k = buffer.getInt();
+			boolean indexed = buffer.getInt() != 0;
+			int gridCells = buffer.getInt();
+			int gridRadius = buffer.getInt();
+			int maximumPoints = buffer.getInt();
+			double tolerance = buffer.getDouble();
+			double[] minimums = new double[dimensions];
+			double[] maximums = new double[dimensions];
+			for (int j = 0; j < dimensions; j++) {
+				minimums[j] = buffer.getDouble();
+			}
+			for (int j = 0; j < dimensions; j++) {
+				maximums[j] = buffer.getDouble();
+			}
+
+			KNNLearner learner = new KNNLearner(minimums, maximums);
+			DataTable table = learner.table;
+			table.setKeys(getKeys(buffer), getKeys(buffer));
+			DoubleBuffer inputBlock = buffer.asDoubleBuffer();
+			inputBlock.limit(rows * dimensions);
+			buffer.position(buffer.position() + 8 * rows * dimensions);
+			DoubleBuffer outputBlock = buffer.asDoubleBuffer();
+			outputBlock.limit(rows * outputs);
+			buffer.position(buffer.position() + 8 * rows * outputs);
+			table.append(inputBlock, outputBlock, rows);
+			table.publish(); // not shared yet
+			KDTree index = indexed ? KDTree.read(table, buffer) : null;
+
+			learner.setK(k);
+			learner.gridCells = gridCells;
+			learner.gridRadius = gridRadius;
+			learner.maximumPoints = maximumPoints;
+			learner.tolerance = tolerance;
+			learner.snapshot = new Snapshot(table, index, learner.newGrid(table));
+			return learner;
+		}
+	}
+
+	/**
+	 * Encode keys as UTF-8.
+	 * <p/>
+	 * @param keys the keys, or {@code null}.
+	 * @return the encoded keys, or {@code null}.
+	 */
+	private static byte[][] encode(String[] keys) {
+		if (keys == null) {
+			return null;
+		}
+		byte[][] encoded = new byte[keys.length][];
+		for (int i = 0; i < keys.length; i++) {
+			encoded[i] = (keys[i] == null) ? null : keys[i].getBytes(StandardCharsets.UTF_8);
+		}
+		return encoded;
+	}
+
+	/**
+	 * Number of bytes {@link #putKeys(ByteBuffer, byte[][])} writes.
+	 * <p/>
+	 * @param keys the encoded keys, or {@code null}.
+	 * @return the byte count.
+	 */
+	private static long keyBytes(byte[][] keys) {
+		long bytes = 4;
+		if (keys != null) {
+			for (byte[] key : keys) {
+				bytes += 4 + ((key == null) ? 0 : key.length);
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Write encoded keys, each prefixed by its length. A missing array or key
+	 * has length -1.
+	 * <p/>
+	 * @param buffer the buffer to write to.
+	 * @param keys the encoded keys, or {@code null}.
+	 */
+	private static void putKeys(ByteBuffer buffer, byte[][] keys) {
+		if (keys == null) {
+			buffer.putInt(-1);
+			return;
+		}
+		buffer.putInt(keys.length);
+		for (byte[] key : keys) {
+			if (key == null) {
+				buffer.putInt(-1);
+			} else {
+				buffer.putInt(key.length);
+				buffer.put(key);
+			}
+		}
+	}
+
+	/**
+	 * Read keys written by {@link #putKeys(ByteBuffer, byte[][])}.
+	 * <p/>
+	 * @param buffer the buffer to read from.
+	 * @return the keys, or {@code null}.
+	 */
+	private static String[] getKeys(ByteBuffer buffer) {
+		int count = buffer.getInt();
+		if (count == -1) {
+			return null;
+		}
+		String[] keys = new String[count];
+		for (int i = 0; i < count; i++) {
+			int length = buffer.getInt();
+			if (length != -1) {
+				byte[] key = new byte[length];
+				buffer.get(key);
+				keys[i] = new String(key, StandardCharsets.UTF_8);
+			}
+		}
+		return keys;
+	}
+
+	/**
+	 * Measure how many of the true nearest neighbors approximate queries find.
+	 * A neighbor counts as found if it is no farther than the true
+	 * {@code k}th nearest neighbor.
+	 * <p/>
+	 * @param queries typical query inputs.
+	 * @return the fraction of true neighbors found, from 0 to 1.
+	 */
+	public double measureRecall(double[][] queries) {
+		Snapshot snapshot = this.snapshot;
+		int length = snapshot.table.size();
+		if (snapshot.grid == null) {
+			throw new Error("Approximate queries are off.");
+		}
+		if (length == 0) {
+			throw new Error("No data.");
+		}
+
+		NeighborHeap approximate = new NeighborHeap(Math.min(k, length));
+		NeighborHeap exact = new NeighborHeap(Math.min(k, length));
+		long found = 0;
+		long total = 0;
+		for (double[] query : queries) {
+			if (!snapshot.grid.nearest(query, length, approximate)) {
+				scan(snapshot.table, query, length, approximate);
+			}
+			exact.clear();
+			scan(snapshot.table, query, length, exact);
+			for (int i = 0; i < approximate.size(); i++) {
+				if (approximate.distance(i) <= exact.worst()) {
+					found++;
+				}
+			}
+			total += exact.size();
+		}
+		return (double) found / total;
+	}
+
 	@Override
 	public void update(DataPoint dataPoint) {
-		data.add(dataPoint);
+		if (maximumPoints > 0) {
+			pointsSeen++;
+			if (snapshot.table.size() > 0) {
+				double error = Math.abs(query(dataPoint.getInputs()) - dataPoint.getOutputs()[0]);
+				totalError += error;
+				if (error <= tolerance) {
+					pointsDropped++;
+					return; // already predicted well enough
+				}
+			}
+		}
+
+		Snapshot snapshot = this.snapshot;
+		int row = snapshot.table.append(dataPoint);
+		if (snapshot.index != null) {
+			snapshot.index.insert(row);
+		}
+		if (snapshot.grid != null) {
+			snapshot.grid.insert(row);
+		}
+		snapshot.table.publish(); // indexed before queries can see it
+
+		if (maximumPoints > 0 && snapshot.table.size() > maximumPoints) {
+			condense();
+		}
+	}
+
+	/**
+	 * Add every row of a batch with one bulk copy, and publish them to
+	 * queries together. While condensing, rows are added one at a time.
+	 */
+	@Override
+	public void update(DataBatch batch) {
+		if (batch.inputWidth() != dimensions) {
+			throw new Error("Incorrect input length");
+		}
+		int outputWidth = snapshot.table.outputWidth();
+		if (outputWidth != -1 && batch.outputWidth() != outputWidth) {
+			throw new Error("Incorrect output length");
+		}
+		if (maximumPoints > 0) {
+			super.update(batch);
+			return;
+		}
+		int rows = batch.size();
+		Snapshot snapshot = this.snapshot;
+		int first = snapshot.table.append(
+			DoubleBuffer.wrap(batch.inputs(), 0, rows * batch.inputWidth()),
+			DoubleBuffer.wrap(batch.outputs(), 0, rows * batch.outputWidth()),
+			rows);
+		for (int row = first; row < first + rows; row++) {
+			if (snapshot.index != null) {
+				snapshot.index.insert(row);
+			}
+			if (snapshot.grid != null) {
+				snapshot.grid.insert(row);
+			}
+		}
+		snapshot.table.publish(); // indexed before queries can see them
 	}
 
 	@Override
 	public double query(DataPoint input) {
-		int length = data.size();
+		return query(input.getInputs());
+	}
+
+	@Override
+	public double query(double[] inputValues) {
+		double[] output = new double[1];
+		query(inputValues, output);
+		return output[0];
+	}
+
+	@Override
+	public void query(DataPoint input, double[] out) {
+		query(input.getInputs(), out);
+	}
+
+	/**
+	 * Query the learner for every output at once. The nearest neighbors are
+	 * found once and their outputs weighted together, so this costs about the
+	 * same as a single-output query.
+	 * <p/>
+	 * @param inputValues the input values.
+	 * @param out filled with the predicted value of each output, starting
+	 * with the first. No longer than the number of outputs in the data.
+	 */
+	@Override
+	public void query(double[] inputValues, double[] out) {
+		long start = queryLatency.start();
+		Snapshot snapshot = this.snapshot;
+		int length = snapshot.table.size();
 		if (length == 0) {
 			throw new Error("No data.");
 		}
+		if (out.length > snapshot.table.outputWidth()) {
+			throw new Error("Too many outputs.");
+		}
 
-		ArrayList<OutputDouble> distance = new ArrayList<>(); // sorted distances by best
-		double[] inputValues = input.getInputs();
-		for (int i = 0; i < length; i++) { // each data point
-			double sum = 0.0;
-			double[] dataPoint = data.get(i).getInputs();
-			for (int j = 0; j < dimensions; j++) {
-				sum += Math.pow(inputValues[j] - dataPoint[j], 2);
+		NeighborHeap neighbors = new NeighborHeap(Math.min(k, length)); // keyed by squared distance
+		if (snapshot.grid != null) {
+			if (!snapshot.grid.nearest(inputValues, length, neighbors)) {
+				scan(snapshot.table, inputValues, length, neighbors);
 			}
-			sum = Math.sqrt(sum);
-			int size = distance.size();
-			if (size == 0) {
-				distance.add(new OutputDouble(sum, data.get(i).getOutput()));
-				continue;
+		} else if (snapshot.index != null) {
+			snapshot.index.nearest(inputValues, length, neighbors);
+		} else {
+			scan(snapshot.table, inputValues, length, neighbors);
+		}
+		weigh(snapshot.table, neighbors, out);
+		queryLatency.stop(start);
+	}
+
+	@Override
+	public void query(double[][] inputs, double[] out) {
+		long start = batchLatency.start();
+		super.query(inputs, out);
+		batchLatency.stop(start);
+	}
+
+	/**
+	 * Find the nearest neighbors by checking every data point.
+	 * <p/>
+	 * @param table the data.
+	 * @param inputValues the query inputs.
+	 * @param length how many data points to check.
+	 * @param neighbors the heap to fill, keyed by squared distance.
+	 */
+	private void scan(DataTable table, double[] inputValues, int length, NeighborHeap neighbors) {
+		double[] inputs = table.inputs(); // contiguous rows
+		double[] distances = new double[Math.min(scanTile, length)];
+		for (int tile = 0; tile < length; tile += scanTile) {
+			int end = Math.min(tile + scanTile, length);
+			DistanceKernel.squared(inputValues, inputs, tile, end, dimensions, distances);
+			offer(distances, tile, end, neighbors);
+		}
+	}
+
+	/**
+	 * Answer a block of queries with one scan over the data. The data is
+	 * walked in tiles small enough to stay in cache while every query in the
+	 * block is compared against them.
+	 */
+	@Override
+	protected void query(double[][] queries, double[] out, int from, int to) {
+		Snapshot snapshot = this.snapshot;
+		int length = snapshot.table.size();
+		if (length == 0) {
+			throw new Error("No data.");
+		}
+		if (snapshot.index != null || snapshot.grid != null) {
+			super.query(queries, out, from, to);
+			return;
+		}
+
+		NeighborHeap[] neighbors = new NeighborHeap[to - from];
+		for (int q = 0; q < neighbors.length; q++) {
+			neighbors[q] = new NeighborHeap(Math.min(k, length));
+		}
+		double[] inputs = snapshot.table.inputs(); // contiguous rows
+		double[] distances = new double[Math.min(scanTile, length)];
+		for (int tile = 0; tile < length; tile += scanTile) {
+			int end = Math.min(tile + scanTile, length);
+			for (int q = from; q < to; q++) { // each query
+				DistanceKernel.squared(queries[q], inputs, tile, end, dimensions, distances);
+				offer(distances, tile, end, neighbors[q - from]);
 			}
-			for (int j = 0; j <= size; j++) {
-				if (j == size) {
-					distance.add(new OutputDouble(sum, data.get(i).getOutput()));
-					break;
-				}
-				if (sum <= distance.get(j).distance) { // better
-					distance.add(j, new OutputDouble(sum, data.get(i).getOutput()));
-					break;
-				}
+		}
+		double[] output = new double[1];
+		for (int q = from; q < to; q++) {
+			weigh(snapshot.table, neighbors[q - from], output);
+			out[q] = output[0];
+		}
+	}
+
+	/**
+	 * Offer a run of rows to a heap, skipping those that cannot make it in.
+	 * <p/>
+	 * @param distances the squared distance to each row, starting at index 0.
+	 * @param from the first row.
+	 * @param to one past the last row.
+	 * @param neighbors the heap to fill.
+	 */
+	private static void offer(double[] distances, int from, int to, NeighborHeap neighbors) {
+		int i = from;
+		for (; i < to && !neighbors.isFull(); i++) {
+			neighbors.offer(distances[i - from], i);
+		}
+		double worst = neighbors.worst();
+		for (; i < to; i++) {
+			if (distances[i - from] <= worst) {
+				neighbors.offer(distances[i - from], i);
+				worst = neighbors.worst();
 			}
 		}
+	}
 
-		distance.subList(0, k).toArray(); // get k nearest neighbors
+	/**
+	 * Combine the outputs of the nearest neighbors, weighted by distance. The
+	 * weights are worked out once and shared by every output.
+	 * <p/>
+	 * @param table the data.
+	 * @param neighbors the nearest neighbors, keyed by squared distance.
+	 * @param out filled with the predicted value of each output, starting
+	 * with the first.
+	 */
+	private void weigh(DataTable table, NeighborHeap neighbors, double[] out) {
+		neighbors.sort(); // nearest first
 
-		double numerator = 0.0;
+		Arrays.fill(out, 0.0);
 		double denominator = 0.0;
-		double best = distance.get(0).distance;
-		for (int i = 0; i < k; i++) {
-			OutputDouble d = distance.get(i);
-			double weight = Math.exp(1 - Math.pow(best / d.distance, 2));
-			numerator += d.output * weight;
+		double best = neighbors.distance(0); // squared, so no roots are needed
+		for (int i = 0; i < neighbors.size(); i++) { // k nearest neighbors
+			double weight = Math.exp(1 - best / neighbors.distance(i));
+			int row = neighbors.index(i);
+			for (int j = 0; j < out.length; j++) {
+				out[j] += table.output(row, j) * weight;
+			}
 			denominator += weight;
 		}
-		
-		double output = numerator / denominator;
-		int i = 0;
-		while (Double.isNaN(output)) {
-			output = distance.get(i++).output;
+
+		for (int j = 0; j < out.length; j++) {
+			out[j] /= denominator;
+			int i = 0;
+			while (Double.isNaN(out[j])) {
+				out[j] = table.output(neighbors.index(i++), j);
+			}
 		}
-		return output;
 	}
 
 	/**
-	 * Labeled distances.
+	 * Merge nearby points with similar outputs until a quarter of the
+	 * {@link #maximumPoints} is free, then swap in the merged data. Points are
+	 * grouped by grid cell and by a band of output values as wide as the
+	 * tolerance, and each group becomes its average. The grid starts fine and
+	 * is coarsened until there are few enough groups. If a grid with as many
+	 * cells as the target is still too fine, the bands are widened instead.
 	 */
-	public class OutputDouble {
+	private void condense() {
+		Snapshot snapshot = this.snapshot;
+		DataTable table = snapshot.table;
+		int length = table.size();
+		int outputs = table.outputWidth();
+		int target = Math.max(1, maximumPoints - maximumPoints / 4);
+		double[] inputs = table.inputs();
 
+		// outputs are banded up from each column's minimum, so a band never straddles zero
+		double[] lowest = new double[outputs];
+		double[] spans = new double[outputs];
+		for (int j = 0; j < outputs; j++) {
+			double minimum = Double.POSITIVE_INFINITY;
+			double maximum = Double.NEGATIVE_INFINITY;
+			for (int i = 0; i < length; i++) {
+				minimum = Math.min(minimum, table.output(i, j));
+				maximum = Math.max(maximum, table.output(i, j));
+			}
+			lowest[j] = minimum;
+			spans[j] = maximum - minimum;
+		}
+		double[] bands = new double[outputs];
+		Arrays.fill(bands, Math.max(tolerance, 0.0)); // 0 to group equal outputs only
+
+		int cells = finestMerge;
+		int coarsest = Math.max(1, (int) Math.floor(Math.pow(target, 1.0 / dimensions)));
+		Map<GroupKey, Integer> groups = new HashMap<>();
+		int[] group = new int[length];
+		while (true) {
+			groups.clear();
+			for (int i = 0; i < length; i++) {
+				long[] coordinates = new long[dimensions + outputs];
+				for (int j = 0; j < dimensions; j++) {
+					double range = maximums[j] - minimums[j];
+					int cell = (range > 0) ? (int) Math.floor((inputs[i * dimensions + j] - minimums[j]) / range * cells) : 0;
+					coordinates[j] = Math.max(0, Math.min(cells - 1, cell));
+				}
+				for (int j = 0; j < outputs; j++) {
+					double output = table.output(i, j);
+					coordinates[dimensions + j] = (bands[j] > 0) ? (long) Math.floor((output - lowest[j]) / bands[j]) : Double.doubleToLongBits(output);
+				}
+				GroupKey key = new GroupKey(coordinates);
+				Integer existing = groups.get(key);
+				if (existing == null) {
+					existing = groups.size();
+					groups.put(key, existing);
+				}
+				group[i] = existing;
+			}
+			if (groups.size() <= target) {
+				break;
+			}
+			if (cells > coarsest) {
+				cells = Math.max(coarsest, cells / 2);
+				continue;
+			}
+			// widen the bands; once each covers its whole column, coarsest cells alone meet the target
+			boolean widened = false;
+			for (int j = 0; j < outputs; j++) {
+				if (bands[j] <= spans[j]) {
+					bands[j] = (bands[j] > 0) ? 2 * bands[j] : spans[j] / finestMerge;
+					if (bands[j] == 0) {
+						bands[j] = Double.POSITIVE_INFINITY; // every output equal
+					}
+					widened = true;
+				}
+			}
+			if (!widened) {
+				break;
+			}
+		}
+
+		// average each group
+		int count = groups.size();
+		double[] sums = new double[count * (dimensions + outputs)];
+		int[] members = new int[count];
+		for (int i = 0; i < length; i++) {
+			int offset = group[i] * (dimensions + outputs);
+			for (int j = 0; j < dimensions; j++) {
+				sums[offset + j] += inputs[i * dimensions + j];
+			}
+			for (int j = 0; j < outputs; j++) {
+				sums[offset + dimensions + j] += table.output(i, j);
+			}
+			members[group[i]]++;
+		}
+		DataTable condensed = new DataTable(dimensions);
+		for (int g = 0; g < count; g++) {
+			int offset = g * (dimensions + outputs);
+			double[] input = new double[dimensions];
+			double[] output = new double[outputs];
+			for (int j = 0; j < dimensions; j++) {
+				input[j] = sums[offset + j] / members[g];
+			}
+			for (int j = 0; j < outputs; j++) {
+				output[j] = sums[offset + dimensions + j] / members[g];
+			}
+			condensed.add(new DataPoint(table.getInputKeys(), input, table.getOutputKeys(), output));
+		}
+		double error = mergeError;
+		for (int i = 0; i < length; i++) {
+			for (int j = 0; j < outputs; j++) {
+				error = Math.max(error, Math.abs(table.output(i, j) - condensed.output(group[i], j)));
+			}
+		}
+		mergeError = error;
+
+		this.snapshot = new Snapshot(condensed,
+			(snapshot.index != null) ? newIndex(condensed) : null,
+			newGrid(condensed));
+		this.table = condensed;
+	}
+
+	/**
+	 * Build a KD-tree over every row of a table.
+	 * <p/>
+	 * @param table the data.
+	 * @return the index.
+	 */
+	private KDTree newIndex(DataTable table) {
+		KDTree index = new KDTree(table);
+		for (int i = 0; i < table.size(); i++) {
+			index.insert(i);
+		}
+		return index;
+	}
+
+	/**
+	 * Build the approximate index over every row of a table, if approximate
+	 * queries are on.
+	 * <p/>
+	 * @param table the data.
+	 * @return the index, or {@code null} if queries are exact.
+	 */
+	private GridIndex newGrid(DataTable table) {
+		if (gridCells == 0) {
+			return null;
+		}
+		GridIndex grid = new GridIndex(table, minimums, maximums, gridCells, gridRadius);
+		for (int i = 0; i < table.size(); i++) {
+			grid.insert(i);
+		}
+		return grid;
+	}
+
+	/**
+	 * The exact grid cell and output bands of a point, for grouping points
+	 * while condensing. Compared coordinate by coordinate, so distinct cells
+	 * never share a group.
+	 */
+	private static final class GroupKey {
 		/**
-		 * Distance to query point.
+		 * Input cell coordinates, then output band coordinates.
 		 */
-		public double distance;
-
+		private final long[] coordinates;
 		/**
-		 * Output value.
+		 * Hash of {@link #coordinates}.
 		 */
-		public double output;
+		private final int hash;
 
 		/**
-		 * Create a labeled distance.
+		 * Create a key.
 		 * <p/>
-		 * @param distance the distance.
-		 * @param output the output value.
+		 * @param coordinates see {@link #coordinates}
 		 */
-		public OutputDouble(double distance, double output) {
-			this.distance = distance;
-			this.output = output;
+		GroupKey(long[] coordinates) {
+			this.coordinates = coordinates;
+			long key = 1;
+			for (long coordinate : coordinates) {
+				key = GridIndex.hash(key, coordinate);
+			}
+			this.hash = (int) (key ^ (key >>> 32));
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			return other instanceof GroupKey && Arrays.equals(coordinates, ((GroupKey) other).coordinates);
 		}
 	}
 
+	/**
+	 * The data and the indexes over it, published together so a query never
+	 * mixes an index with the wrong data.
+	 */
+	private static class Snapshot {
+		/**
+		 * The data.
+		 */
+		final DataTable table;
+		/**
+		 * Spatial index over the data, or {@code null} if queries scan every
+		 * point.
+		 */
+		final KDTree index;
+		/**
+		 * Approximate index over the data, or {@code null} if queries are
+		 * exact.
+		 */
+		final GridIndex grid;
+
+		/**
+		 * Create a snapshot.
+		 * <p/>
+		 * @param table see {@link #table}
+		 * @param index see {@link #index}
+		 * @param grid see {@link #grid}
+		 */
+		Snapshot(DataTable table, KDTree index, GridIndex grid) {
+			this.table = table;
+			this.index = index;
+			this.grid = grid;
+		}
+	}
 }
@@ -0,0 +1,179 @@
+package com.shsrobotics.reinforcementlearning.supervisedlearners;
+
+/**
+ * Bounded max-heap of the nearest neighbors found so far. Keeps at most
+ * {@code k} point indices keyed by their distance, with the worst neighbor on
+ * top so it can be replaced in O(log k) time. Points at equal distances are
+ * ordered by index, so the neighbors kept do not depend on the order points
+ * are offered in. Backed by primitive arrays, so offering a point allocates
+ * nothing.
+ * <p/>
+ * @author Team 2412.
+ */
+public class NeighborHeap {
+
+	/**
+	 * Neighbor distances, in heap order.
+	 */
+	private final double[] distances;
+
+	/**
+	 * Neighbor point indices, matched with {@link #distances}.
+	 */
+	private final int[] indices;
+
+	/**
+	 * How many neighbors are stored.
+	 */
+	private int size = 0;
+
+	/**
+	 * Create an empty heap.
+	 * <p/>
+	 * @param k the maximum number of neighbors to keep.
+	 */
+	public NeighborHeap(int k) {
+		distances = new double[k];
+		indices = new int[k];
+	}
+
+	/**
+	 * Remove all neighbors.
+	 */
+	public void clear() {
+		size = 0;
+	}
+
+	/**
+	 * How many neighbors are stored.
+	 * <p/>
+	 * @return the size.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Whether {@code k} neighbors have been found.
+	 * <p/>
+	 * @return true if full.
+	 */
+	public boolean isFull() {
+		return size == distances.length;
+	}
+
+	/**
+	 * The distance of the worst stored neighbor. Only meaningful if the heap
+	 * is not empty.
+	 * <p/>
+	 * @return the largest distance.
+	 */
+	public double worst() {
+		return distances[0];
+	}
+
+	/**
+	 * Offer a point. It is kept if the heap is not full or if it is nearer
+	 * than the worst stored neighbor, which it then replaces. Of two points at
+	 * the same distance, the one with the lower index is nearer.
+	 * <p/>
+	 * @param distance the distance to the point.
+	 * @param index the point index.
+	 */
+	public void offer(double distance, int index) {
+		if (size < distances.length) {
+			// sift up
+			int child = size++;
+			while (child > 0) {
+				int parent = (child - 1) >>> 1;
+				if (!before(distances[parent], indices[parent], distance, index)) {
+					break;
+				}
+				distances[child] = distances[parent];
+				indices[child] = indices[parent];
+				child = parent;
+			}
+			distances[child] = distance;
+			indices[child] = index;
+		} else if (size > 0 && before(distance, index, distances[0], indices[0])) {
+			siftDown(0, distance, index, size);
+		}
+	}
+
+	/**
+	 * Sort the stored neighbors nearest first, in place. The heap must not be
+	 * offered more points until it is cleared.
+	 */
+	public void sort() {
+		for (int end = size - 1; end > 0; end--) {
+			double distance = distances[end];
+			int index = indices[end];
+			distances[end] = distances[0];
+			indices[end] = indices[0];
+			siftDown(0, distance, index, end);
+		}
+	}
+
+	/**
+	 * The distance of a neighbor. After {@link #sort()}, position 0 is the
+	 * nearest.
+	 * <p/>
+	 * @param position the neighbor position.
+	 * @return the distance.
+	 */
+	public double distance(int position) {
+		return distances[position];
+	}
+
+	/**
+	 * The point index of a neighbor.
+	 * <p/>
+	 * @param position the neighbor position.
+	 * @return the point index.
+	 */
+	public int index(int position) {
+		return indices[position];
+	}
+
+	/**
+	 * Place a neighbor at a position, moving larger children up.
+	 * <p/>
+	 * @param position where to start.
+	 * @param distance the distance to place.
+	 * @param index the point index to place.
+	 * @param end how many positions are part of the heap.
+	 */
+	private void siftDown(int position, double distance, int index, int end) {
+		while (true) {
+			int child = 2 * position + 1;
+			if (child >= end) {
+				break;
+			}
+			if (child + 1 < end && before(distances[child], indices[child], distances[child + 1], indices[child + 1])) {
+				child++;
+			}
+			if (!before(distance, index, distances[child], indices[child])) {
+				break;
+			}
+			distances[position] = distances[child];
+			indices[position] = indices[child];
+			position = child;
+		}
+		distances[position] = distance;
+		indices[position] = index;
+	}
+
+	/**
+	 * Whether one neighbor is nearer than another, breaking distance ties by
+	 * index.
+	 * <p/>
+	 * @param distance the first distance.
+	 * @param index the first point index.
+	 * @param otherDistance the second distance.
+	 * @param otherIndex the second point index.
+	 * @return true if the first comes first.
+	 */
+	private static boolean before(double distance, int index, double otherDistance, int otherIndex) {
+		return distance < otherDistance || (distance == otherDistance && index < otherIndex);
+	}
+}
@@ -0,0 +1,286 @@
+package com.shsrobotics.reinforcementlearning.supervisedlearners;
+
+import com.shsrobotics.reinforcementlearning.util.DataBatch;
+import com.shsrobotics.reinforcementlearning.util.DataPoint;
+import java.util.Arrays;
+
+/**
+ * Fits a polynomial to the data by recursive least squares. The learner keeps
+ * only the polynomial weights and their covariance, so its memory and the
+ * cost of every update and query are fixed by the number of features,
+ * however many points it has seen: {@code O(features^2)} to update and
+ * {@code O(features)} to query. Features are every product of the inputs, each
+ * scaled to [-1, 1], up to the chosen total degree.
+ * <p/>
+ * Written by one thread and read by any number without locking; each update
+ * publishes a new weight vector, so a query sees the weights from before or
+ * after an update, never a mix.
+ * <p/>
+ * @author Team 2412.
+ */
+public class RLSLearner extends SupervisedLearner {
+
+	/**
+	 * Number of input variables.
+	 */
+	private final int dimensions;
+
+	/**
+	 * Exponent of each input in each feature, feature after feature.
+	 */
+	private final int[] exponents;
+
+	/**
+	 * Number of features.
+	 */
+	private final int features;
+
+	/**
+	 * Highest total degree of a feature.
+	 */
+	private final int degree;
+
+	/**
+	 * Feature weights. Replaced, never changed, by each update.
+	 */
+	private volatile double[] weights;
+
+	/**
+	 * Weight covariance, scaled by the noise variance. Row after row.
+	 */
+	private final double[] covariance;
+
+	/**
+	 * Starting weight variance. Larger trusts the first points more.
+	 */
+	private double initialVariance = 1e4;
+
+	/**
+	 * Weight of each older point relative to the next, from 0 to 1. Below 1,
+	 * old points are gradually forgotten, so the fit can follow a drifting
+	 * target.
+	 */
+	private double forgetting = 1.0;
+
+	/**
+	 * Number of data points learned.
+	 */
+	private volatile long pointsSeen = 0;
+
+	/**
+	 * Create a learner.
+	 * <p/>
+	 * @param minimums see {@link #minimums}
+	 * @param maximums see {@link #maximums}
+	 * @param degree the highest total degree of a feature. 1 fits a plane, 2
+	 * a quadratic, and so on.
+	 */
+	public RLSLearner(double[] minimums, double[] maximums, int degree) {
+		super(minimums, maximums);
+		this.dimensions = minimums.length;
+		this.degree = degree;
+
+		// every exponent combination with total degree up to the limit
+		int count = 0;
+		int[] exponent = new int[dimensions];
+		int[] list = new int[dimensions];
+		do {
+			if (count * dimensions == list.length) {
+				list = Arrays.copyOf(list, 2 * list.length + dimensions);
+			}
+			System.arraycopy(exponent, 0, list, count * dimensions, dimensions);
+			count++;
+		} while (next(exponent));
+		this.features = count;
+		this.exponents = Arrays.copyOf(list, count * dimensions);
+
+		this.weights = new double[features];
+		this.covariance = new double[features * features];
+		reset();
+	}
+
+	/**
+	 * Set how much the first points are trusted. Forgets everything learned.
+	 * <p/>
+	 * @param variance the starting weight variance. Defaults to {@code 1e4};
+	 * smaller values pull the fit toward zero while data is scarce.
+	 */
+	public void setInitialVariance(double variance) {
+		this.initialVariance = variance;
+		reset();
+	}
+
+	/**
+	 * Set how fast old points are forgotten.
+	 * <p/>
+	 * @param forgetting the weight of each older point relative to the next,
+	 * from 0 to 1. Defaults to 1, which remembers everything; 0.999 has a
+	 * memory of about a thousand points.
+	 */
+	public void setForgetting(double forgetting) {
+		this.forgetting = forgetting;
+	}
+
+	/**
+	 * Forget everything learned.
+	 */
+	public void reset() {
+		Arrays.fill(covariance, 0.0);
+		for (int i = 0; i < features; i++) {
+			covariance[i * features + i] = initialVariance;
+		}
+		weights = new double[features];
+		pointsSeen = 0;
+	}
+
+	/**
+	 * Number of features.
+	 * <p/>
+	 * @return the feature count.
+	 */
+	public int getFeatures() {
+		return features;
+	}
+
+	/**
+	 * Number of data points learned.
+	 * <p/>
+	 * @return the count.
+	 */
+	public long getPointsSeen() {
+		return pointsSeen;
+	}
+
+	@Override
+	public void update(DataPoint dataPoint) {
+		learn(features(dataPoint.getInputs(), 0), dataPoint.getOutputs()[0]);
+	}
+
+	@Override
+	public void update(DataBatch batch) {
+		int inputWidth = batch.inputWidth();
+		int outputWidth = batch.outputWidth();
+		double[] inputs = batch.inputs();
+		double[] outputs = batch.outputs();
+		for (int i = 0; i < batch.size(); i++) {
+			learn(features(inputs, i * inputWidth), outputs[i * outputWidth]);
+		}
+	}
+
+	/**
+	 * Fold one point into the weights and covariance.
+	 * <p/>
+	 * @param phi the features of the input.
+	 * @param output the output value.
+	 */
+	private void learn(double[] phi, double output) {
+		double[] current = weights;
+
+		// gain = P phi / (forgetting + phi' P phi)
+		double[] gain = new double[features];
+		double denominator = forgetting;
+		for (int i = 0; i < features; i++) {
+			double sum = 0.0;
+			int row = i * features;
+			for (int j = 0; j < features; j++) {
+				sum += covariance[row + j] * phi[j];
+			}
+			gain[i] = sum;
+			denominator += phi[i] * sum;
+		}
+
+		double error = output;
+		for (int i = 0; i < features; i++) {
+			error -= current[i] * phi[i];
+		}
+
+		double[] updated = new double[features];
+		for (int i = 0; i < features; i++) {
+			updated[i] = current[i] + gain[i] * error / denominator;
+		}
+
+		// P = (P - P phi phi' P / denominator) / forgetting, kept symmetric
+		for (int i = 0; i < features; i++) {
+			double scaled = gain[i] / denominator;
+			for (int j = i; j < features; j++) {
+				double value = (covariance[i * features + j] - scaled * gain[j]) / forgetting;
+				covariance[i * features + j] = value;
+				covariance[j * features + i] = value;
+			}
+		}
+
+		weights = updated;
+		pointsSeen++;
+	}
+
+	@Override
+	public double query(DataPoint input) {
+		return query(input.getInputs());
+	}
+
+	@Override
+	public double query(double[] input) {
+		double[] phi = features(input, 0);
+		double[] current = weights;
+		double output = 0.0;
+		for (int i = 0; i < features; i++) {
+			output += current[i] * phi[i];
+		}
+		return output;
+	}
+
+	/**
+	 * Compute the features of a point.
+	 * <p/>
+	 * @param input the input values.
+	 * @param offset where the point starts in {@code input}.
+	 * @return the feature values.
+	 */
+	private double[] features(double[] input, int offset) {
+		// powers of each scaled input
+		double[] powers = new double[dimensions * (degree + 1)];
+		for (int j = 0; j < dimensions; j++) {
+			double range = maximums[j] - minimums[j];
+			double x = (range > 0) ? 2 * (input[offset + j] - minimums[j]) / range - 1 : 0.0;
+			double power = 1.0;
+			for (int e = 0; e <= degree; e++) {
+				powers[j * (degree + 1) + e] = power;
+				power *= x;
+			}
+		}
+
+		double[] phi = new double[features];
+		for (int f = 0; f < features; f++) {
+			double product = 1.0;
+			int row = f * dimensions;
+			for (int j = 0; j < dimensions; j++) {
+				product *= powers[j * (degree + 1) + exponents[row + j]];
+			}
+			phi[f] = product;
+		}
+		return phi;
+	}
+
+	/**
+	 * Step to the next exponent combination with total degree up to
+	 * {@link #degree}, counting with the first input fastest.
+	 * <p/>
+	 * @param exponent the combination. Changed in place.
+	 * @return false once every combination has been seen.
+	 */
+	private boolean next(int[] exponent) {
+		int total = 0;
+		for (int e : exponent) {
+			total += e;
+		}
+		for (int j = 0; j < dimensions; j++) {
+			if (total < degree) {
+				exponent[j]++;
+				return true;
+			}
+			total -= exponent[j]; // carry into the next input
+			exponent[j] = 0;
+		}
+		return false;
+	}
+}
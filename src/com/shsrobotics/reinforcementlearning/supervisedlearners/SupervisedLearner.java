@@ -1,7 +1,12 @@
 package com.shsrobotics.reinforcementlearning.supervisedlearners;
 
+import com.shsrobotics.reinforcementlearning.util.DataBatch;
 import com.shsrobotics.reinforcementlearning.util.DataPoint;
+import com.shsrobotics.reinforcementlearning.util.DataTable;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * A supervised learner.
@@ -17,10 +22,33 @@ public abstract class SupervisedLearner {
 	protected double[] maximums;
 	
 	/**
-	 * The model data.
+	 * The model data. Learners that keep their points in {@link #table}
+	 * leave this empty.
 	 */
 	protected ArrayList<DataPoint> data;
 	
+	/**
+	 * The model data, stored in flat primitive blocks. Written by one thread
+	 * and read by any number without locking. Learners that condense their
+	 * data replace it with a smaller table.
+	 */
+	protected volatile DataTable table;
+	
+	/**
+	 * Batch queries with more points than this are split across the
+	 * {@link #pool}.
+	 */
+	private static final int batchGrain = 32;
+	
+	/**
+	 * Pool shared by learners that have not been given their own.
+	 */
+	private static ForkJoinPool sharedPool = null;
+	
+	/**
+	 * Pool to run batch queries on, or {@code null} to use the shared pool.
+	 */
+	private ForkJoinPool pool = null;
 	
 	/**
 	 * Create a supervised learner.
@@ -31,6 +59,7 @@ public abstract class SupervisedLearner {
 		this.minimums = minimums;
 		this.maximums = maximums;
 		data = new ArrayList<>();
+		table = new DataTable(minimums.length);
 	}
 	
 	/**
@@ -39,10 +68,168 @@ public abstract class SupervisedLearner {
 	 */
 	public abstract void update(DataPoint dataPoint);
 	
+	/**
+	 * Update the model with many experiences at once. Learners that can load
+	 * rows in bulk override this; by default each row is added in turn.
+	 * @param batch the data points to add. Values are copied.
+	 */
+	public void update(DataBatch batch) {
+		int inputWidth = batch.inputWidth();
+		int outputWidth = batch.outputWidth();
+		for (int i = 0; i < batch.size(); i++) {
+			update(new DataPoint(null,
+				Arrays.copyOfRange(batch.inputs(), i * inputWidth, (i + 1) * inputWidth),
+				null,
+				Arrays.copyOfRange(batch.outputs(), i * outputWidth, (i + 1) * outputWidth)));
+		}
+	}
+	
 	/**
 	 * Query the learner for a prediction.
 	 * @param input the input values.
 	 * @return the predicted output value.
 	 */
 	public abstract double query(DataPoint input);
+	
+	/**
+	 * Query the learner for a prediction.
+	 * @param input the input values.
+	 * @return the predicted output value.
+	 */
+	public double query(double[] input) {
+		return query(new DataPoint(null, input, null, null));
+	}
+
+	/**
+	 * Query the learner for every output at once. Learners that predict one
+	 * output only support an {@code out} of length 1.
+	 * @param input the input values.
+	 * @param out filled with the predicted value of each output, starting
+	 * with the first.
+	 */
+	public void query(DataPoint input, double[] out) {
+		if (out.length > 1) {
+			throw new Error("Single output only.");
+		}
+		if (out.length == 1) {
+			out[0] = query(input);
+		}
+	}
+
+	/**
+	 * Query the learner for every output at once.
+	 * @param input the input values.
+	 * @param out filled with the predicted value of each output, starting
+	 * with the first.
+	 */
+	public void query(double[] input, double[] out) {
+		query(new DataPoint(null, input, null, null), out);
+	}
+
+	/**
+	 * Query the learner for many predictions at once. Large batches are split
+	 * across a {@link ForkJoinPool}. The learner's single writer may keep
+	 * updating meanwhile. Each prediction comes from data published at some
+	 * moment during the call, never from a half-written update, but
+	 * different points may see different amounts of data.
+	 * @param inputs the input values of each point.
+	 * @param out filled with the predicted output value of each point.
+	 */
+	public void query(double[][] inputs, double[] out) {
+		if (inputs.length <= batchGrain) {
+			query(inputs, out, 0, inputs.length);
+		} else {
+			getPool().invoke(new BatchQuery(inputs, out, 0, inputs.length));
+		}
+	}
+	
+	/**
+	 * Answer one block of a batch query. Runs on a single thread. Learners can
+	 * override this to share work between the points of a block.
+	 * @param inputs the input values of each point.
+	 * @param out filled with the predicted output value of each point.
+	 * @param from first point, inclusive.
+	 * @param to last point, exclusive.
+	 */
+	protected void query(double[][] inputs, double[] out, int from, int to) {
+		for (int i = from; i < to; i++) {
+			out[i] = query(inputs[i]);
+		}
+	}
+	
+	/**
+	 * Set the pool to run batch queries on.
+	 * @param pool the new pool, or {@code null} to use a pool shared by all
+	 * learners.
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+	
+	/**
+	 * Get the pool to run batch queries on.
+	 * @return the pool.
+	 */
+	private ForkJoinPool getPool() {
+		if (pool != null) {
+			return pool;
+		}
+		synchronized (SupervisedLearner.class) {
+			if (sharedPool == null) {
+				sharedPool = new ForkJoinPool();
+			}
+			return sharedPool;
+		}
+	}
+	
+	/**
+	 * A batch query split in halves until the blocks are small.
+	 */
+	private class BatchQuery extends RecursiveAction {
+		/**
+		 * Serialization version.
+		 */
+		private static final long serialVersionUID = 1L;
+		/**
+		 * The input values of each point.
+		 */
+		private final double[][] inputs;
+		/**
+		 * The predicted output values.
+		 */
+		private final double[] out;
+		/**
+		 * First point, inclusive.
+		 */
+		private final int from;
+		/**
+		 * Last point, exclusive.
+		 */
+		private final int to;
+		
+		/**
+		 * Create a batch query.
+		 * @param inputs the input values of each point.
+		 * @param out filled with the predicted output value of each point.
+		 * @param from first point, inclusive.
+		 * @param to last point, exclusive.
+		 */
+		BatchQuery(double[][] inputs, double[] out, int from, int to) {
+			this.inputs = inputs;
+			this.out = out;
+			this.from = from;
+			this.to = to;
+		}
+		
+		@Override
+		protected void compute() {
+			if (to - from <= batchGrain) {
+				query(inputs, out, from, to);
+			} else {
+				int middle = (from + to) >>> 1;
+				invokeAll(new BatchQuery(inputs, out, from, middle),
+					new BatchQuery(inputs, out, middle, to));
+			}
+		}
+	}
 }
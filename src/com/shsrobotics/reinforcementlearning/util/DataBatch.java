@@ -0,0 +1,123 @@
+package com.shsrobotics.reinforcementlearning.util;
+
+import java.util.Arrays;
+
+/**
+ * A batch of rows in flat primitive blocks, for loading many data points at
+ * once without a {@link DataPoint} per row. Grows as rows are added.
+ * <p/>
+ * @author Team 2412.
+ */
+public class DataBatch {
+
+	/**
+	 * Number of input values per row.
+	 */
+	private final int inputWidth;
+
+	/**
+	 * Number of output values per row.
+	 */
+	private final int outputWidth;
+
+	/**
+	 * Input values. Row {@code i} starts at {@code i * inputWidth}.
+	 */
+	private double[] inputs;
+
+	/**
+	 * Output values. Row {@code i} starts at {@code i * outputWidth}.
+	 */
+	private double[] outputs;
+
+	/**
+	 * Number of rows.
+	 */
+	private int size = 0;
+
+	/**
+	 * Create an empty batch.
+	 * <p/>
+	 * @param inputWidth the number of input values per row.
+	 * @param outputWidth the number of output values per row.
+	 * @param capacity the number of rows to make room for.
+	 */
+	public DataBatch(int inputWidth, int outputWidth, int capacity) {
+		this.inputWidth = inputWidth;
+		this.outputWidth = outputWidth;
+		capacity = Math.max(capacity, 1);
+		this.inputs = new double[capacity * inputWidth];
+		this.outputs = new double[capacity * outputWidth];
+	}
+
+	/**
+	 * Add a row of zeros, to be filled in through {@link #inputs()} and
+	 * {@link #outputs()}.
+	 * <p/>
+	 * @return the row index.
+	 */
+	public int addRow() {
+		if ((size + 1) * inputWidth > inputs.length || (size + 1) * outputWidth > outputs.length) {
+			int newRows = 2 * size + 1;
+			inputs = Arrays.copyOf(inputs, newRows * inputWidth);
+			outputs = Arrays.copyOf(outputs, newRows * outputWidth);
+		}
+		return size++;
+	}
+
+	/**
+	 * Remove every row, keeping the blocks.
+	 */
+	public void clear() {
+		Arrays.fill(inputs, 0, size * inputWidth, 0.0);
+		Arrays.fill(outputs, 0, size * outputWidth, 0.0);
+		size = 0;
+	}
+
+	/**
+	 * Number of rows.
+	 * <p/>
+	 * @return the size.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Number of input values per row.
+	 * <p/>
+	 * @return the width.
+	 */
+	public int inputWidth() {
+		return inputWidth;
+	}
+
+	/**
+	 * Number of output values per row.
+	 * <p/>
+	 * @return the width.
+	 */
+	public int outputWidth() {
+		return outputWidth;
+	}
+
+	/**
+	 * Get the backing input block. It is replaced when the batch grows, so it
+	 * should not be held across calls to {@link #addRow()}.
+	 * <p/>
+	 * @return the input values, row after row.
+	 */
+	public double[] inputs() {
+		return inputs;
+	}
+
+	/**
+	 * Get the backing output block. It is replaced when the batch grows, so it
+	 * should not be held across calls to {@link #addRow()}.
+	 * <p/>
+	 * @return the output values, row after row.
+	 */
+	public double[] outputs() {
+		return outputs;
+	}
+}
@@ -105,39 +105,49 @@ public class DataPoint {
 	}
 
 	/**
-	 * Set a key-value pair.
+	 * Set a key-value pair. The value is written in place, so arrays shared
+	 * with this point see the change.
 	 * <p/>
 	 * @param key the key.
 	 * @param value the value to set the key to.
 	 */
 	public void setInput(String key, double value) {
-		double[] newInput = input.clone();
-		newInput[indexOf(key)] = value;
-		input = newInput.clone();
+		input[indexOf(key)] = value;
 	}
 	
 	/**
-	 * Set a key-value pair.
+	 * Set a key-value pair. The value is written in place, so arrays shared
+	 * with this point see the change.
 	 * <p/>
 	 * @param index the index of a key.
 	 * @param value the value to set the key to.
 	 */
 	public void setOutput(int index, double value) {
-		double[] newOutput = input.clone();
-		newOutput[index] = value;
-		output = newOutput.clone();
+		output[index] = value;
 	}
 	
 	/**
-	 * Set a key-value pair.
+	 * Set a key-value pair. The value is written in place, so arrays shared
+	 * with this point see the change.
 	 * <p/>
 	 * @param index the index of a key.
 	 * @param value the value to set the key to.
 	 */
 	public void setInput(int index, double value) {
-		double[] newInput = input.clone();
-		newInput[index] = value;
-		input = newInput.clone();
+		input[index] = value;
+	}
+	
+	/**
+	 * Copy this point. The copy has its own value arrays, so later changes to
+	 * either point do not affect the other.
+	 * <p/>
+	 * @return the copy.
+	 */
+	public DataPoint copy() {
+		return new DataPoint(getInputKeys(),
+			(input == null) ? null : input.clone(),
+			getOutputKeys(),
+			(output == null) ? null : output.clone());
 	}
 
 	/**
@@ -190,8 +200,9 @@ public class DataPoint {
 	 * @param value the value to look for.
 	 */
 	private int indexOf(String value) {
-		for (int i = 0; i < inputKeys.length; i++) {
-			if (value.equals(inputKeys[i])) { // found
+		String[] keys = getInputKeys();
+		for (int i = 0; i < keys.length; i++) {
+			if (value.equals(keys[i])) { // found
 				return i;
 			}
 		}
@@ -0,0 +1,306 @@
+package com.shsrobotics.reinforcementlearning.util;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+/**
+ * A growable table of data points stored in flat primitive blocks. Inputs and
+ * outputs are kept in separate {@code double[]} blocks, one row after another,
+ * and every row shares one set of keys. A point costs
+ * {@code 8 * (inputs + outputs)} bytes, and scans over the inputs read
+ * contiguous memory.
+ * <p/>
+ * Rows are only ever appended, by one writer thread at a time. Any number of
+ * other threads may read without locking: a reader calls {@link #size()}
+ * first, then reads the blocks, and sees every row below that size. Rows are
+ * written before they are published, so a reader never sees a partial row.
+ * <p/>
+ * @author Team 2412.
+ */
+public class DataTable {
+
+	/**
+	 * Number of input values per row.
+	 */
+	private final int inputWidth;
+
+	/**
+	 * Number of output values per row, or -1 until the first row is added.
+	 */
+	private volatile int outputWidth = -1;
+
+	/**
+	 * Shared input keys, or {@code null} if unknown.
+	 */
+	private String[] inputKeys;
+
+	/**
+	 * Shared output keys, or {@code null} if unknown.
+	 */
+	private String[] outputKeys;
+
+	/**
+	 * Input values. Row {@code i} starts at {@code i * inputWidth}.
+	 */
+	private volatile double[] inputs;
+
+	/**
+	 * Output values. Row {@code i} starts at {@code i * outputWidth}.
+	 */
+	private volatile double[] outputs;
+
+	/**
+	 * Number of published rows.
+	 */
+	private volatile int size = 0;
+
+	/**
+	 * Number of rows appended but not yet published.
+	 */
+	private int staged = 0;
+
+	/**
+	 * Create an empty table. The output width and keys are taken from the
+	 * first row added.
+	 * <p/>
+	 * @param inputWidth the number of input values per row.
+	 */
+	public DataTable(int inputWidth) {
+		this.inputWidth = inputWidth;
+		this.inputs = new double[16 * inputWidth];
+		this.outputs = new double[16];
+	}
+
+	/**
+	 * Add a data point. Its values are copied.
+	 * <p/>
+	 * @param point the point to add.
+	 * @return the row index.
+	 */
+	public int add(DataPoint point) {
+		int row = append(point);
+		publish();
+		return row;
+	}
+
+	/**
+	 * Append a data point without publishing it to readers. Its values are
+	 * copied. Indexes over the table can be updated before calling
+	 * {@link #publish()}, so readers never see a row their index is missing.
+	 * <p/>
+	 * @param point the point to add.
+	 * @return the row index.
+	 */
+	public int append(DataPoint point) {
+		if (inputKeys == null) {
+			inputKeys = point.getInputKeys();
+			outputKeys = point.getOutputKeys();
+		}
+		return append(point.getInputs(), point.getOutputs());
+	}
+
+	/**
+	 * Add a row. The values are copied.
+	 * <p/>
+	 * @param input the input values.
+	 * @param output the output values.
+	 * @return the row index.
+	 */
+	public int add(double[] input, double[] output) {
+		int row = append(input, output);
+		publish();
+		return row;
+	}
+
+	/**
+	 * Append a row without publishing it to readers. The values are copied.
+	 * <p/>
+	 * @param input the input values.
+	 * @param output the output values.
+	 * @return the row index.
+	 */
+	public int append(double[] input, double[] output) {
+		if (outputWidth == -1) {
+			outputWidth = output.length;
+		}
+		if (input.length != inputWidth) {
+			throw new Error("Incorrect input length");
+		}
+		if (output.length != outputWidth) {
+			throw new Error("Incorrect output length");
+		}
+		int row = size + staged;
+		ensureCapacity(row + 1);
+		System.arraycopy(input, 0, inputs, row * inputWidth, inputWidth);
+		System.arraycopy(output, 0, outputs, row * outputWidth, outputWidth);
+		staged++;
+		return row;
+	}
+
+	/**
+	 * Append many rows at once without publishing them to readers. Values are
+	 * copied in bulk from the buffers, which are advanced past them. Each
+	 * buffer must hold exactly {@code rows} rows, so a buffer of the wrong
+	 * width is rejected rather than misaligned.
+	 * <p/>
+	 * @param input the input values, row after row.
+	 * @param output the output values, row after row.
+	 * @param rows the number of rows.
+	 * @return the row index of the first row.
+	 */
+	public int append(DoubleBuffer input, DoubleBuffer output, int rows) {
+		if (outputWidth == -1 && rows > 0) {
+			outputWidth = output.remaining() / rows;
+		}
+		if (input.remaining() != rows * inputWidth) {
+			throw new Error("Incorrect input length");
+		}
+		if (output.remaining() != rows * outputWidth) {
+			throw new Error("Incorrect output length");
+		}
+		int first = size + staged;
+		ensureCapacity(first + rows);
+		input.get(inputs, first * inputWidth, rows * inputWidth);
+		output.get(outputs, first * outputWidth, rows * outputWidth);
+		staged += rows;
+		return first;
+	}
+
+	/**
+	 * Publish the appended rows to readers.
+	 */
+	public void publish() {
+		if (staged > 0) {
+			size += staged; // one write, so readers see every row or none
+			staged = 0;
+		}
+	}
+
+	/**
+	 * Set the shared keys, if they are not known yet.
+	 * <p/>
+	 * @param inputKeys the input keys.
+	 * @param outputKeys the output keys.
+	 */
+	public void setKeys(String[] inputKeys, String[] outputKeys) {
+		if (this.inputKeys == null) {
+			this.inputKeys = inputKeys;
+			this.outputKeys = outputKeys;
+		}
+	}
+
+	/**
+	 * Number of published rows.
+	 * <p/>
+	 * @return the size.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Number of input values per row.
+	 * <p/>
+	 * @return the width.
+	 */
+	public int inputWidth() {
+		return inputWidth;
+	}
+
+	/**
+	 * Number of output values per row.
+	 * <p/>
+	 * @return the width, or -1 if no rows have been added.
+	 */
+	public int outputWidth() {
+		return outputWidth;
+	}
+
+	/**
+	 * Get the backing input block. It is replaced when the table grows, but
+	 * old blocks keep their rows, so a reader may hold one for as long as it
+	 * needs the rows below the size it read first.
+	 * <p/>
+	 * @return the input values, row after row.
+	 */
+	public double[] inputs() {
+		return inputs;
+	}
+
+	/**
+	 * Get the backing output block. It is replaced when the table grows, but
+	 * old blocks keep their rows, so a reader may hold one for as long as it
+	 * needs the rows below the size it read first.
+	 * <p/>
+	 * @return the output values, row after row.
+	 */
+	public double[] outputs() {
+		return outputs;
+	}
+
+	/**
+	 * Get an input value.
+	 * <p/>
+	 * @param row the row index.
+	 * @param column the input index.
+	 * @return the value.
+	 */
+	public double input(int row, int column) {
+		return inputs[row * inputWidth + column];
+	}
+
+	/**
+	 * Get an output value.
+	 * <p/>
+	 * @param row the row index.
+	 * @param column the output index.
+	 * @return the value.
+	 */
+	public double output(int row, int column) {
+		return outputs[row * outputWidth + column];
+	}
+
+	/**
+	 * Get a copy of a row as a data point.
+	 * <p/>
+	 * @param row the row index.
+	 * @return the point.
+	 */
+	public DataPoint get(int row) {
+		return new DataPoint(inputKeys,
+			Arrays.copyOfRange(inputs, row * inputWidth, (row + 1) * inputWidth),
+			outputKeys,
+			Arrays.copyOfRange(outputs, row * outputWidth, (row + 1) * outputWidth));
+	}
+
+	/**
+	 * Get the shared input keys.
+	 * <p/>
+	 * @return the keys, or {@code null} if unknown.
+	 */
+	public String[] getInputKeys() {
+		return inputKeys;
+	}
+
+	/**
+	 * Get the shared output keys.
+	 * <p/>
+	 * @return the keys, or {@code null} if unknown.
+	 */
+	public String[] getOutputKeys() {
+		return outputKeys;
+	}
+
+	/**
+	 * Grow the blocks.
+	 * <p/>
+	 * @param rows the minimum number of rows.
+	 */
+	private void ensureCapacity(int rows) {
+		if (rows * inputWidth > inputs.length || rows * outputWidth > outputs.length) {
+			int newRows = Math.max(Math.max(rows, 2 * (size + staged)), 16);
+			inputs = Arrays.copyOf(inputs, newRows * inputWidth);
+			outputs = Arrays.copyOf(outputs, newRows * outputWidth);
+		}
+	}
+}
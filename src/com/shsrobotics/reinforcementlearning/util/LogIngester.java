@@ -0,0 +1,435 @@
+package com.shsrobotics.reinforcementlearning.util;
+
+import com.shsrobotics.reinforcementlearning.supervisedlearners.SupervisedLearner;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Streams logged data points from disk into a learner in one pass. The file is
+ * read in fixed-size chunks, each chunk is parsed into a {@link DataBatch} on
+ * a worker pool, and batches are loaded into the learner in file order with
+ * {@link SupervisedLearner#update(DataBatch)}. Only a fixed number of chunks
+ * are in flight at once: when that many are waiting, reading stops until the
+ * oldest has been loaded, so memory stays bounded however large the log.
+ * <p/>
+ * Two formats are read. CSV logs have one row per line, the input values
+ * followed by the output values, separated by commas. Binary logs are the same
+ * rows as little-endian doubles, one after another.
+ * <p/>
+ * The learner is updated from the calling thread.
+ * <p/>
+ * @author Team 2412.
+ */
+public class LogIngester {
+
+	/**
+	 * Powers of ten that are exact doubles.
+	 */
+	private static final double[] powersOfTen = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/**
+	 * Number of input values per row.
+	 */
+	private final int inputWidth;
+
+	/**
+	 * Number of output values per row.
+	 */
+	private final int outputWidth;
+
+	/**
+	 * Pool to parse chunks on, or {@code null} to parse on the calling thread.
+	 */
+	private final ExecutorService executor;
+
+	/**
+	 * Bytes read at a time.
+	 */
+	private int chunkSize = 1 << 20;
+
+	/**
+	 * Most chunks parsed or waiting to be loaded at once.
+	 */
+	private int queueDepth = 4;
+
+	/**
+	 * Create an ingester.
+	 * <p/>
+	 * @param inputWidth the number of input values per row.
+	 * @param outputWidth the number of output values per row.
+	 * @param executor the pool to parse chunks on, or {@code null} to parse on
+	 * the calling thread.
+	 */
+	public LogIngester(int inputWidth, int outputWidth, ExecutorService executor) {
+		this.inputWidth = inputWidth;
+		this.outputWidth = outputWidth;
+		this.executor = executor;
+	}
+
+	/**
+	 * Set the number of bytes read at a time.
+	 * <p/>
+	 * @param chunkSize the chunk size.
+	 */
+	public void setChunkSize(int chunkSize) {
+		this.chunkSize = Math.max(chunkSize, 8 * (inputWidth + outputWidth));
+	}
+
+	/**
+	 * Set the most chunks parsed or waiting to be loaded at once. Memory use is
+	 * a small multiple of this times the chunk size.
+	 * <p/>
+	 * @param queueDepth the number of chunks.
+	 */
+	public void setQueueDepth(int queueDepth) {
+		this.queueDepth = Math.max(queueDepth, 1);
+	}
+
+	/**
+	 * Load a CSV log. Blank lines and lines starting with {@code #} are
+	 * skipped.
+	 * <p/>
+	 * @param file the log.
+	 * @param header whether the first line holds column names.
+	 * @param learner the learner to load into.
+	 * @return the number of rows loaded.
+	 * @throws IOException if the log cannot be read.
+	 */
+	public long readCsv(File file, boolean header, SupervisedLearner learner) throws IOException {
+		return read(file, true, header, learner);
+	}
+
+	/**
+	 * Load a binary log.
+	 * <p/>
+	 * @param file the log.
+	 * @param learner the learner to load into.
+	 * @return the number of rows loaded.
+	 * @throws IOException if the log cannot be read.
+	 */
+	public long readBinary(File file, SupervisedLearner learner) throws IOException {
+		return read(file, false, false, learner);
+	}
+
+	/**
+	 * Read a log chunk by chunk, keeping at most {@link #queueDepth} chunks in
+	 * flight.
+	 * <p/>
+	 * @param file the log.
+	 * @param csv whether the log is CSV rather than binary.
+	 * @param header whether the first line holds column names.
+	 * @param learner the learner to load into.
+	 * @return the number of rows loaded.
+	 * @throws IOException if the log cannot be read.
+	 */
+	private long read(File file, boolean csv, boolean header, SupervisedLearner learner) throws IOException {
+		int rowBytes = 8 * (inputWidth + outputWidth);
+		int size = csv ? chunkSize : Math.max(rowBytes, chunkSize - chunkSize % rowBytes);
+		ArrayDeque<Future<DataBatch>> pending = new ArrayDeque<>();
+		long rows = 0;
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			byte[] carry = new byte[0];
+			boolean skip = header;
+			boolean end = false;
+			while (!end) {
+				final byte[] chunk = Arrays.copyOf(carry, carry.length + size);
+				int length = carry.length + fill(channel, ByteBuffer.wrap(chunk, carry.length, size));
+				end = length < chunk.length;
+
+				int from = 0;
+				int to = csv ? length : length - length % rowBytes;
+				if (csv && !end) {
+					to = lastIndexOf(chunk, 0, length, (byte) '\n') + 1;
+					if (to == 0) {
+						carry = chunk; // a line longer than a chunk
+						continue;
+					}
+				}
+				if (skip) {
+					from = Math.min(firstIndexOf(chunk, 0, to, (byte) '\n') + 1, to);
+					skip = false;
+				}
+				carry = Arrays.copyOfRange(chunk, to, length);
+
+				pending.add(submit(chunk, from, to, csv));
+				if (pending.size() >= queueDepth) {
+					rows += load(pending.remove(), learner); // wait for the oldest
+				}
+			}
+			if (!csv && carry.length > 0) {
+				throw new Error("Truncated binary log.");
+			}
+			while (!pending.isEmpty()) {
+				rows += load(pending.remove(), learner);
+			}
+		} finally {
+			for (Future<DataBatch> batch : pending) {
+				batch.cancel(true);
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * Parse a chunk on the pool.
+	 * <p/>
+	 * @param chunk the bytes.
+	 * @param from first byte, inclusive.
+	 * @param to last byte, exclusive.
+	 * @param csv whether the chunk is CSV rather than binary.
+	 * @return the parsed batch, when ready.
+	 */
+	private Future<DataBatch> submit(final byte[] chunk, final int from, final int to, final boolean csv) {
+		Callable<DataBatch> task = new Callable<DataBatch>() {
+			@Override
+			public DataBatch call() {
+				return csv ? parseCsv(chunk, from, to) : parseBinary(chunk, from, to);
+			}
+		};
+		if (executor != null) {
+			return executor.submit(task);
+		}
+		FutureTask<DataBatch> inline = new FutureTask<>(task);
+		inline.run();
+		return inline;
+	}
+
+	/**
+	 * Wait for a chunk to be parsed and load it into the learner.
+	 * <p/>
+	 * @param future the parsed batch.
+	 * @param learner the learner to load into.
+	 * @return the number of rows loaded.
+	 * @throws IOException if interrupted while waiting.
+	 */
+	private static int load(Future<DataBatch> future, SupervisedLearner learner) throws IOException {
+		DataBatch batch;
+		try {
+			batch = future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while loading a log.");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new Error(e.getCause());
+		}
+		if (batch.size() > 0) {
+			learner.update(batch);
+		}
+		return batch.size();
+	}
+
+	/**
+	 * Parse rows of CSV.
+	 * <p/>
+	 * @param bytes the text.
+	 * @param from first byte, inclusive.
+	 * @param to last byte, exclusive.
+	 * @return the rows.
+	 */
+	private DataBatch parseCsv(byte[] bytes, int from, int to) {
+		int width = inputWidth + outputWidth;
+		DataBatch batch = new DataBatch(inputWidth, outputWidth, (to - from) / (4 * width) + 1);
+		int line = from;
+		while (line < to) {
+			int lineEnd = firstIndexOf(bytes, line, to, (byte) '\n');
+			int start = skipSpace(bytes, line, lineEnd);
+			if (start < lineEnd && bytes[start] != '#' && bytes[start] != '\r') {
+				int row = batch.addRow();
+				double[] inputs = batch.inputs();
+				double[] outputs = batch.outputs();
+				int field = start;
+				for (int j = 0; j < width; j++) {
+					int fieldEnd = firstIndexOf(bytes, field, lineEnd, (byte) ',');
+					if ((fieldEnd == lineEnd) != (j == width - 1)) {
+						throw new Error("Expected " + width + " values per row: "
+							+ new String(bytes, line, lineEnd - line, StandardCharsets.US_ASCII).trim());
+					}
+					double value = parseNumber(bytes, field, fieldEnd);
+					if (j < inputWidth) {
+						inputs[row * inputWidth + j] = value;
+					} else {
+						outputs[row * outputWidth + j - inputWidth] = value;
+					}
+					field = fieldEnd + 1;
+				}
+			}
+			line = lineEnd + 1;
+		}
+		return batch;
+	}
+
+	/**
+	 * Parse rows of little-endian doubles.
+	 * <p/>
+	 * @param bytes the data.
+	 * @param from first byte, inclusive.
+	 * @param to last byte, exclusive.
+	 * @return the rows.
+	 */
+	private DataBatch parseBinary(byte[] bytes, int from, int to) {
+		int rows = (to - from) / (8 * (inputWidth + outputWidth));
+		DataBatch batch = new DataBatch(inputWidth, outputWidth, rows);
+		DoubleBuffer values = ByteBuffer.wrap(bytes, from, to - from).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+		for (int i = 0; i < rows; i++) {
+			int row = batch.addRow();
+			values.get(batch.inputs(), row * inputWidth, inputWidth);
+			values.get(batch.outputs(), row * outputWidth, outputWidth);
+		}
+		return batch;
+	}
+
+	/**
+	 * Parse a decimal number from ASCII text. Plain decimals with up to 15
+	 * significant digits are converted directly, which is exact; anything
+	 * else falls back to {@link Double#parseDouble(String)}.
+	 * <p/>
+	 * @param bytes the text.
+	 * @param from first byte, inclusive.
+	 * @param to last byte, exclusive.
+	 * @return the value.
+	 */
+	static double parseNumber(byte[] bytes, int from, int to) {
+		from = skipSpace(bytes, from, to);
+		while (to > from && (bytes[to - 1] == ' ' || bytes[to - 1] == '\t' || bytes[to - 1] == '\r')) {
+			to--;
+		}
+		int i = from;
+		boolean negative = false;
+		if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+			negative = bytes[i++] == '-';
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean any = false;
+		while (i < to && bytes[i] >= '0' && bytes[i] <= '9') {
+			mantissa = 10 * mantissa + (bytes[i++] - '0');
+			digits += (mantissa != 0) ? 1 : 0;
+			any = true;
+		}
+		if (i < to && bytes[i] == '.') {
+			i++;
+			while (i < to && bytes[i] >= '0' && bytes[i] <= '9') {
+				mantissa = 10 * mantissa + (bytes[i++] - '0');
+				digits += (mantissa != 0) ? 1 : 0;
+				exponent--;
+				any = true;
+			}
+		}
+		if (any && i < to && (bytes[i] == 'e' || bytes[i] == 'E')) {
+			i++;
+			boolean negativeExponent = false;
+			if (i < to && (bytes[i] == '-' || bytes[i] == '+')) {
+				negativeExponent = bytes[i++] == '-';
+			}
+			int value = 0;
+			boolean anyExponent = false;
+			while (i < to && bytes[i] >= '0' && bytes[i] <= '9' && value < 10000) {
+				value = 10 * value + (bytes[i++] - '0');
+				anyExponent = true;
+			}
+			any = anyExponent;
+			exponent += negativeExponent ? -value : value;
+		}
+
+		if (any && i == to && digits <= 15 && Math.abs(exponent) < powersOfTen.length) {
+			double value = (exponent < 0) ? mantissa / powersOfTen[-exponent] : mantissa * powersOfTen[exponent];
+			return negative ? -value : value;
+		}
+		String text = new String(bytes, from, to - from, StandardCharsets.US_ASCII);
+		try {
+			return Double.parseDouble(text);
+		} catch (NumberFormatException e) {
+			throw new Error("Malformed number: " + text);
+		}
+	}
+
+	/**
+	 * Read from a channel until the buffer is full or the channel ends.
+	 * <p/>
+	 * @param channel the channel.
+	 * @param buffer the buffer to fill.
+	 * @return the number of bytes read.
+	 * @throws IOException if the channel cannot be read.
+	 */
+	private static int fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+		int total = 0;
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer);
+			if (read < 0) {
+				break;
+			}
+			total += read;
+		}
+		return total;
+	}
+
+	/**
+	 * Skip spaces and tabs.
+	 * <p/>
+	 * @param bytes the text.
+	 * @param from first byte, inclusive.
+	 * @param to last byte, exclusive.
+	 * @return the first other byte, or {@code to}.
+	 */
+	private static int skipSpace(byte[] bytes, int from, int to) {
+		while (from < to && (bytes[from] == ' ' || bytes[from] == '\t')) {
+			from++;
+		}
+		return from;
+	}
+
+	/**
+	 * Find the first occurrence of a byte in a range.
+	 * <p/>
+	 * @param bytes the bytes.
+	 * @param from first byte, inclusive.
+	 * @param to last byte, exclusive.
+	 * @param value the byte to find.
+	 * @return its index, or {@code to} if absent.
+	 */
+	private static int firstIndexOf(byte[] bytes, int from, int to, byte value) {
+		while (from < to && bytes[from] != value) {
+			from++;
+		}
+		return from;
+	}
+
+	/**
+	 * Find the last occurrence of a byte in a range.
+	 * <p/>
+	 * @param bytes the bytes.
+	 * @param from first byte, inclusive.
+	 * @param to last byte, exclusive.
+	 * @param value the byte to find.
+	 * @return its index, or {@code from - 1} if absent.
+	 */
+	private static int lastIndexOf(byte[] bytes, int from, int to, byte value) {
+		while (--to >= from && bytes[to] != value) {
+		}
+		return to;
+	}
+}
@@ -0,0 +1,339 @@
+package com.shsrobotics.reinforcementlearning.util;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the library's hot paths. Recording is a
+ * few atomic increments and two clock reads, cheap enough to leave on. Latency
+ * histograms have one bucket per power of two nanoseconds, so percentiles are
+ * accurate to within a factor of two.
+ * <p/>
+ * The library records into {@link #getDefault()}:
+ * <ul>
+ *	<li>{@code "Agent Request"} -- latency of {@code RLAgent.requestAction}</li>
+ *	<li>{@code "Agent Transitions"} -- transitions passed to {@code RLAgent.learn}</li>
+ *	<li>{@code "KNN Query"} -- latency of a single {@code KNNLearner} query</li>
+ *	<li>{@code "KNN Batch Query"} -- latency of a whole {@code KNNLearner}
+ *		batch query</li>
+ *	<li>{@code "Optimizer Search"} -- latency of {@code DefaultOptimizer.maximize}
+ *		and {@code minimize}</li>
+ *	<li>{@code "Optimizer Iterations"} -- pattern search iterations</li>
+ *	<li>{@code "Optimizer Evaluations"} -- calls to {@code f}</li>
+ * </ul>
+ * <p/>
+ * @author Team 2412.
+ */
+public class Metrics implements MetricsMXBean {
+
+	/**
+	 * Number of latency buckets, one per bit of a {@code long}.
+	 */
+	private static final int buckets = 64;
+
+	/**
+	 * Returned by {@link Histogram#start()} when recording is off.
+	 */
+	private static final long notStarted = Long.MIN_VALUE;
+
+	/**
+	 * Metrics shared by the whole library.
+	 */
+	private static final Metrics defaultMetrics = new Metrics();
+
+	/**
+	 * Whether to record.
+	 */
+	private volatile boolean enabled = true;
+
+	/**
+	 * Counters by name.
+	 */
+	private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+	/**
+	 * Latency histograms by name.
+	 */
+	private final ConcurrentMap<String, Histogram> histograms = new ConcurrentHashMap<>();
+
+	/**
+	 * Get the metrics shared by the whole library.
+	 * <p/>
+	 * @return the metrics.
+	 */
+	public static Metrics getDefault() {
+		return defaultMetrics;
+	}
+
+	/**
+	 * Turn recording on or off. While off, recording costs one volatile read.
+	 * <p/>
+	 * @param enabled whether to record.
+	 */
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Get a counter, creating it if needed.
+	 * <p/>
+	 * @param name the counter name.
+	 * @return the counter.
+	 */
+	public Counter counter(String name) {
+		Counter counter = counters.get(name);
+		if (counter == null) {
+			counters.putIfAbsent(name, new Counter());
+			counter = counters.get(name);
+		}
+		return counter;
+	}
+
+	/**
+	 * Get a latency histogram, creating it if needed.
+	 * <p/>
+	 * @param name the histogram name.
+	 * @return the histogram.
+	 */
+	public Histogram histogram(String name) {
+		Histogram histogram = histograms.get(name);
+		if (histogram == null) {
+			histograms.putIfAbsent(name, new Histogram());
+			histogram = histograms.get(name);
+		}
+		return histogram;
+	}
+
+	/**
+	 * Register with the platform MBean server, so the metrics can be read
+	 * with JConsole or any other JMX client.
+	 * <p/>
+	 * @param name the object name, for example
+	 * {@code "com.shsrobotics:type=Metrics"}.
+	 * @throws JMException if the name is invalid or already registered.
+	 */
+	public void register(String name) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(name));
+	}
+
+	@Override
+	public Map<String, Long> getCounters() {
+		Map<String, Long> values = new TreeMap<>();
+		for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+			values.put(entry.getKey(), entry.getValue().get());
+		}
+		return values;
+	}
+
+	@Override
+	public Map<String, Long> getLatencyCounts() {
+		Map<String, Long> values = new TreeMap<>();
+		for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+			values.put(entry.getKey(), entry.getValue().count());
+		}
+		return values;
+	}
+
+	@Override
+	public Map<String, Double> getMeanLatencies() {
+		Map<String, Double> values = new TreeMap<>();
+		for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+			values.put(entry.getKey(), entry.getValue().mean() / 1000);
+		}
+		return values;
+	}
+
+	@Override
+	public Map<String, Double> getMedianLatencies() {
+		return percentiles(0.5);
+	}
+
+	@Override
+	public Map<String, Double> get99thPercentileLatencies() {
+		return percentiles(0.99);
+	}
+
+	@Override
+	public void reset() {
+		for (Counter counter : counters.values()) {
+			counter.set(0);
+		}
+		for (Histogram histogram : histograms.values()) {
+			histogram.reset();
+		}
+	}
+
+	/**
+	 * A percentile of every histogram.
+	 * <p/>
+	 * @param fraction the fraction of samples at or below the percentile.
+	 * @return the percentiles in microseconds, by histogram name.
+	 */
+	private Map<String, Double> percentiles(double fraction) {
+		Map<String, Double> values = new TreeMap<>();
+		for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+			values.put(entry.getKey(), entry.getValue().percentile(fraction) / 1000);
+		}
+		return values;
+	}
+
+	/**
+	 * A count, or a level such as a data set size.
+	 */
+	public class Counter {
+		/**
+		 * The value.
+		 */
+		private final AtomicLong value = new AtomicLong();
+
+		/**
+		 * Create a counter at zero.
+		 */
+		private Counter() {
+		}
+
+		/**
+		 * Add to the count.
+		 * <p/>
+		 * @param amount the amount to add.
+		 */
+		public void add(long amount) {
+			if (enabled) {
+				value.addAndGet(amount);
+			}
+		}
+
+		/**
+		 * Set the level.
+		 * <p/>
+		 * @param level the new value.
+		 */
+		public void set(long level) {
+			value.set(level);
+		}
+
+		/**
+		 * Get the value.
+		 * <p/>
+		 * @return the value.
+		 */
+		public long get() {
+			return value.get();
+		}
+	}
+
+	/**
+	 * A histogram of latencies, with one bucket per power of two nanoseconds.
+	 */
+	public class Histogram {
+		/**
+		 * Number of samples in each bucket. Bucket {@code b} holds latencies
+		 * from {@code 2^b} up to {@code 2^(b + 1)} nanoseconds.
+		 */
+		private final AtomicLongArray counts = new AtomicLongArray(buckets);
+
+		/**
+		 * Sum of every sample, in nanoseconds.
+		 */
+		private final AtomicLong total = new AtomicLong();
+
+		/**
+		 * Create an empty histogram.
+		 */
+		private Histogram() {
+		}
+
+		/**
+		 * Start timing.
+		 * <p/>
+		 * @return the start time, to pass to {@link #stop(long)}.
+		 */
+		public long start() {
+			return enabled ? System.nanoTime() : notStarted;
+		}
+
+		/**
+		 * Stop timing and record the latency.
+		 * <p/>
+		 * @param start the value returned by {@link #start()}.
+		 */
+		public void stop(long start) {
+			if (start != notStarted) {
+				record(System.nanoTime() - start);
+			}
+		}
+
+		/**
+		 * Record a latency.
+		 * <p/>
+		 * @param nanoseconds the latency.
+		 */
+		public void record(long nanoseconds) {
+			nanoseconds = Math.max(nanoseconds, 1);
+			counts.incrementAndGet(63 - Long.numberOfLeadingZeros(nanoseconds));
+			total.addAndGet(nanoseconds);
+		}
+
+		/**
+		 * Number of samples.
+		 * <p/>
+		 * @return the count.
+		 */
+		public long count() {
+			long count = 0;
+			for (int b = 0; b < buckets; b++) {
+				count += counts.get(b);
+			}
+			return count;
+		}
+
+		/**
+		 * Mean latency.
+		 * <p/>
+		 * @return the mean in nanoseconds, or 0 if there are no samples.
+		 */
+		public double mean() {
+			long count = count();
+			return (count == 0) ? 0.0 : (double) total.get() / count;
+		}
+
+		/**
+		 * Estimate a percentile, as the upper edge of the bucket it falls in.
+		 * <p/>
+		 * @param fraction the fraction of samples at or below the percentile.
+		 * @return the percentile in nanoseconds, or 0 if there are no samples.
+		 */
+		public double percentile(double fraction) {
+			long count = count();
+			if (count == 0) {
+				return 0.0;
+			}
+			long rank = (long) Math.ceil(fraction * count);
+			long seen = 0;
+			for (int b = 0; b < buckets; b++) {
+				seen += counts.get(b);
+				if (seen >= rank) {
+					return Math.pow(2, b + 1);
+				}
+			}
+			return Math.pow(2, buckets);
+		}
+
+		/**
+		 * Remove every sample.
+		 */
+		void reset() {
+			for (int b = 0; b < buckets; b++) {
+				counts.set(b, 0);
+			}
+			total.set(0);
+		}
+	}
+}
@@ -0,0 +1,46 @@
+package com.shsrobotics.reinforcementlearning.util;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link Metrics}, for reading them over JMX.
+ * Latencies are in microseconds.
+ * <p/>
+ * @author Team 2412.
+ */
+public interface MetricsMXBean {
+	/**
+	 * Value of every counter.
+	 * @return the values by name.
+	 */
+	public Map<String, Long> getCounters();
+
+	/**
+	 * Number of samples in every latency histogram.
+	 * @return the counts by name.
+	 */
+	public Map<String, Long> getLatencyCounts();
+
+	/**
+	 * Mean of every latency histogram.
+	 * @return the means by name.
+	 */
+	public Map<String, Double> getMeanLatencies();
+
+	/**
+	 * Median of every latency histogram, to within a factor of two.
+	 * @return the medians by name.
+	 */
+	public Map<String, Double> getMedianLatencies();
+
+	/**
+	 * 99th percentile of every latency histogram, to within a factor of two.
+	 * @return the percentiles by name.
+	 */
+	public Map<String, Double> get99thPercentileLatencies();
+
+	/**
+	 * Set every counter to zero and empty every histogram.
+	 */
+	public void reset();
+}